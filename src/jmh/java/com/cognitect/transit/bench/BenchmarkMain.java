@@ -0,0 +1,45 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of target/benchmarks.jar. Accepts the usual JMH command line;
+ * unless told otherwise it attaches the gc profiler (allocation rate and
+ * bytes per op) and reports both throughput in ops/s and latency in ns/op.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams()
+                || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        if (cmd.getBenchModes().isEmpty()) {
+            new Runner(options(cmd).mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).build()).run();
+            new Runner(options(cmd).mode(Mode.AverageTime).timeUnit(TimeUnit.NANOSECONDS).build()).run();
+        } else {
+            new Runner(options(cmd).build()).run();
+        }
+    }
+
+    private static ChainedOptionsBuilder options(CommandLineOptions cmd) {
+        ChainedOptionsBuilder b = new OptionsBuilder().parent(cmd);
+        if (cmd.getProfilers().isEmpty()) {
+            b.addProfiler(GCProfiler.class);
+        }
+        return b;
+    }
+}
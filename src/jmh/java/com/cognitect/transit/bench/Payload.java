@@ -0,0 +1,193 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.bench;
+
+import com.cognitect.transit.Keyword;
+import com.cognitect.transit.TransitFactory;
+import com.cognitect.transit.impl.RatioImpl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Payload shapes exercised by the benchmarks. Every payload is built from a
+ * fixed seed so that runs are comparable across builds.
+ */
+public enum Payload {
+
+    /** one map with 2000 keyword keys, more than the write cache can hold */
+    WIDE_MAP {
+        @Override
+        public Object build(Random rnd) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            for (int i = 0; i < 2000; i++) {
+                m.put(TransitFactory.keyword("acme.field/f" + i), scalar(rnd, i));
+            }
+            return m;
+        }
+    },
+
+    /** maps and arrays nested 90 levels deep (msgpack 0.6 packers stop at 128) */
+    DEEP_NESTING {
+        @Override
+        public Object build(Random rnd) {
+            Object o = Arrays.asList(1L, 2L, 3L);
+            for (int i = 0; i < 60; i++) {
+                Map<Object, Object> m = new HashMap<Object, Object>();
+                m.put(TransitFactory.keyword("depth"), (long) i);
+                m.put(TransitFactory.keyword("child"), o);
+                m.put(TransitFactory.keyword("siblings"), Arrays.asList("a", "b", (long) i));
+                o = (i % 2 == 0) ? m : Arrays.asList(m, (long) i);
+            }
+            return o;
+        }
+    },
+
+    /** large primitive arrays */
+    PRIMITIVE_ARRAYS {
+        @Override
+        public Object build(Random rnd) {
+            long[] longs = new long[10000];
+            double[] doubles = new double[10000];
+            int[] ints = new int[10000];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = rnd.nextLong() >> 12;
+                doubles[i] = rnd.nextDouble() * 1000.0;
+                ints[i] = rnd.nextInt();
+            }
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("longs"), longs);
+            m.put(TransitFactory.keyword("doubles"), doubles);
+            m.put(TransitFactory.keyword("ints"), ints);
+            return m;
+        }
+    },
+
+    /** a map with composite keys, written as cmap */
+    CMAP {
+        @Override
+        public Object build(Random rnd) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            for (int i = 0; i < 500; i++) {
+                m.put(Arrays.asList((long) i, "key-" + i), scalar(rnd, i));
+            }
+            return m;
+        }
+    },
+
+    /** an array of records dominated by UUIDs and dates */
+    RECORDS {
+        @Override
+        public Object build(Random rnd) {
+            Keyword id = TransitFactory.keyword("record/id");
+            Keyword owner = TransitFactory.keyword("record/owner");
+            Keyword created = TransitFactory.keyword("record/created");
+            Keyword updated = TransitFactory.keyword("record/updated");
+            Keyword name = TransitFactory.keyword("record/name");
+            Keyword score = TransitFactory.keyword("record/score");
+            Keyword active = TransitFactory.keyword("record/active");
+            Keyword tags = TransitFactory.keyword("record/tags");
+            List<Object> l = new ArrayList<Object>();
+            for (int i = 0; i < 500; i++) {
+                Map<Object, Object> m = new HashMap<Object, Object>();
+                m.put(id, new UUID(rnd.nextLong(), rnd.nextLong()));
+                m.put(owner, new UUID(rnd.nextLong(), rnd.nextLong()));
+                m.put(created, new Date(1400000000000L + rnd.nextInt()));
+                m.put(updated, new Date(1500000000000L + rnd.nextInt()));
+                m.put(name, "record number " + i);
+                m.put(score, rnd.nextDouble());
+                m.put(active, rnd.nextBoolean());
+                m.put(tags, new HashSet<Object>(Arrays.asList(
+                        TransitFactory.keyword("tag" + (i % 7)),
+                        TransitFactory.keyword("tag" + (i % 11)))));
+                l.add(m);
+            }
+            return l;
+        }
+    },
+
+    /** an array of records made only of ground types: strings, numbers, booleans and keywords */
+    SCALARS {
+        @Override
+        public Object build(Random rnd) {
+            Keyword[] kinds = new Keyword[8];
+            for (int i = 0; i < kinds.length; i++)
+                kinds[i] = TransitFactory.keyword("kind" + i);
+            List<Object> l = new ArrayList<Object>();
+            for (int i = 0; i < 2000; i++) {
+                l.add(Arrays.asList(
+                        (long) i,
+                        rnd.nextInt(1000),
+                        rnd.nextDouble(),
+                        rnd.nextBoolean(),
+                        "item " + i,
+                        kinds[i % kinds.length],
+                        rnd.nextLong() >> 12,
+                        rnd.nextDouble() * 100.0));
+            }
+            return l;
+        }
+    },
+
+    /**
+     * an array of records with a few hot keys, a keyword of their own each
+     * and one of 1500 categories; more distinct strings than the cache holds
+     */
+    HOT_KEYS {
+        @Override
+        public Object build(Random rnd) {
+            Keyword[] keys = new Keyword[12];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = TransitFactory.keyword("event/field" + i);
+            List<Object> l = new ArrayList<Object>();
+            for (int i = 0; i < 3000; i++) {
+                Map<Object, Object> m = new HashMap<Object, Object>();
+                for (int k = 0; k < keys.length; k++)
+                    m.put(keys[k], scalar(rnd, k));
+                m.put(TransitFactory.keyword("event/ref"), TransitFactory.keyword("ref/r" + i));
+                m.put(TransitFactory.keyword("event/category"),
+                        TransitFactory.keyword("category/c" + rnd.nextInt(1500)));
+                l.add(m);
+            }
+            return l;
+        }
+    },
+
+    /** an array of tagged and extension values */
+    TAGGED {
+        @Override
+        public Object build(Random rnd) {
+            List<Object> l = new ArrayList<Object>();
+            for (int i = 0; i < 500; i++) {
+                switch (i % 8) {
+                    case 0: l.add(TransitFactory.taggedValue("point", Arrays.asList((long) i, (long) -i))); break;
+                    case 1: l.add(new RatioImpl(BigInteger.valueOf(i + 1), BigInteger.valueOf(i + 3))); break;
+                    case 2: l.add(TransitFactory.uri("http://example.com/item/" + i)); break;
+                    case 3: l.add(new BigDecimal(rnd.nextDouble()).setScale(12, BigDecimal.ROUND_HALF_UP)); break;
+                    case 4: l.add(BigInteger.valueOf(rnd.nextLong()).shiftLeft(64)); break;
+                    case 5: l.add(TransitFactory.symbol("ns/sym" + i)); break;
+                    case 6: l.add(new LinkedList<Object>(Arrays.asList((long) i, 'c', "s"))); break;
+                    default: l.add(TransitFactory.link("http://example.com/" + i, "item")); break;
+                }
+            }
+            return l;
+        }
+    };
+
+    public abstract Object build(Random rnd);
+
+    public Object build() {
+        return build(new Random(42));
+    }
+
+    private static Object scalar(Random rnd, int i) {
+        switch (i % 4) {
+            case 0: return rnd.nextLong() >> 12;
+            case 1: return "value-" + i;
+            case 2: return rnd.nextDouble();
+            default: return rnd.nextBoolean();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.bench;
+
+import com.cognitect.transit.Reader;
+import com.cognitect.transit.CachePolicy;
+import com.cognitect.transit.TransitFactory;
+import com.cognitect.transit.Writer;
+import com.cognitect.transit.WriterOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures TransitFactory.reader plus a single top-level read of a payload
+ * that was encoded once during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Param({"JSON", "JSON_VERBOSE", "MSGPACK", "MSGPACK_CORE"})
+    public TransitFactory.Format format;
+
+    @Param({"WIDE_MAP", "DEEP_NESTING", "PRIMITIVE_ARRAYS", "CMAP", "RECORDS", "SCALARS", "TAGGED", "HOT_KEYS"})
+    public Payload payload;
+
+    @Param({"RESTART"})
+    public CachePolicy cachePolicy;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer<Object> w = TransitFactory.writer(format, out, new WriterOptions().withCachePolicy(cachePolicy));
+        w.write(payload.build());
+        bytes = out.toByteArray();
+    }
+
+    @Benchmark
+    public Object read() {
+        Reader r = TransitFactory.reader(format, new ByteArrayInputStream(bytes));
+        return r.read();
+    }
+}
@@ -0,0 +1,52 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.bench;
+
+import com.cognitect.transit.CachePolicy;
+import com.cognitect.transit.TransitFactory;
+import com.cognitect.transit.Writer;
+import com.cognitect.transit.WriterOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures TransitFactory.writer plus a single top-level write, the way a
+ * service encodes one message per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({"JSON", "JSON_VERBOSE", "MSGPACK", "MSGPACK_CORE"})
+    public TransitFactory.Format format;
+
+    @Param({"WIDE_MAP", "DEEP_NESTING", "PRIMITIVE_ARRAYS", "CMAP", "RECORDS", "SCALARS", "TAGGED", "HOT_KEYS"})
+    public Payload payload;
+
+    @Param({"RESTART"})
+    public CachePolicy cachePolicy;
+
+    private Object data;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() {
+        data = payload.build();
+        out = new ByteArrayOutputStream(1 << 20);
+    }
+
+    @Benchmark
+    public int write() {
+        out.reset();
+        Writer<Object> w = TransitFactory.writer(format, out, new WriterOptions().withCachePolicy(cachePolicy));
+        w.write(data);
+        return out.size();
+    }
+}
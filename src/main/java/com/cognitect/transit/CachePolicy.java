@@ -0,0 +1,36 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.cognitect.transit;
+
+/**
+ * What a Writer's cache does once all cache codes are in use, which
+ * happens in values with more than 1936 distinct cacheable strings
+ * (map keys, keywords, symbols and tags), or on session streams.
+ */
+public enum CachePolicy {
+
+    /**
+     * Starts over with an empty cache; this is the default
+     */
+    RESTART,
+
+    /**
+     * Keeps the strings in use: a string seen again takes the place of
+     * one not used lately, strings seen only once are not cached. The
+     * writer puts a marker ahead of the first value, which tells readers
+     * to do the same; older readers don't understand it.
+     */
+    CLOCK
+}
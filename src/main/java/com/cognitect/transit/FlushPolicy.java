@@ -0,0 +1,83 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.cognitect.transit;
+
+/**
+ * Controls when a Writer hands buffered output to its stream and
+ * flushes it.
+ */
+public final class FlushPolicy {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Flushes the stream once after every top-level value; this is the default
+     */
+    public static final FlushPolicy PER_WRITE = new FlushPolicy(DEFAULT_BUFFER_SIZE, true, false);
+
+    /**
+     * Never flushes on its own; output is written to the stream as buffers
+     * fill up and flushed only when Writer.flush is called
+     */
+    public static final FlushPolicy MANUAL = new FlushPolicy(DEFAULT_BUFFER_SIZE, false, false);
+
+    /**
+     * Buffers output and flushes the stream whenever at least the given
+     * number of bytes have accumulated, regardless of value boundaries.
+     * Remaining output is flushed by Writer.flush.
+     * @param bytes the number of bytes to buffer between flushes
+     * @return a flush policy
+     */
+    public static FlushPolicy everyBytes(int bytes) {
+        if (bytes <= 0)
+            throw new IllegalArgumentException("Flush threshold must be positive: " + bytes);
+        return new FlushPolicy(bytes, false, true);
+    }
+
+    private final int bufferSize;
+    private final boolean flushEachWrite;
+    private final boolean flushWhenFull;
+
+    private FlushPolicy(int bufferSize, boolean flushEachWrite, boolean flushWhenFull) {
+        this.bufferSize = bufferSize;
+        this.flushEachWrite = flushEachWrite;
+        this.flushWhenFull = flushWhenFull;
+    }
+
+    /**
+     * @return the number of bytes buffered in front of the stream
+     */
+    public int getBufferSize() { return bufferSize; }
+
+    /**
+     * @return true if the stream is flushed after every top-level value
+     */
+    public boolean flushesEachWrite() { return flushEachWrite; }
+
+    /**
+     * @return true if the stream is flushed whenever the buffer fills up
+     */
+    public boolean flushesWhenFull() { return flushWhenFull; }
+
+    @Override
+    public String toString() {
+        if (flushEachWrite)
+            return "FlushPolicy.PER_WRITE";
+        else if (flushWhenFull)
+            return "FlushPolicy.everyBytes(" + bufferSize + ")";
+        else
+            return "FlushPolicy.MANUAL";
+    }
+}
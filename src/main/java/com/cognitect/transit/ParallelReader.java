@@ -0,0 +1,44 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.cognitect.transit;
+
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Reads a stream of concatenated (or newline-delimited) top-level values
+ * using several threads. Since the read cache is reset for every top-level
+ * value, the stream is cut at value boundaries into chunks which are then
+ * decoded independently of each other.
+ *
+ * Streams written with {@link WriterOptions#withSessionCache(boolean)} keep
+ * the cache across values, so they are only cut where the writer reset
+ * its cache: how much of such a stream is decoded in parallel depends on
+ * {@link WriterOptions#withCacheResetInterval(int)}, and a stream that is
+ * never reset is decoded on one thread.
+ */
+public interface ParallelReader {
+    /**
+     * Reads all values from an input stream until EOF. In ordered mode
+     * consumer is called on the calling thread, in stream order; otherwise
+     * it is called on the decoding threads as values become available and
+     * must be thread safe.
+     * @param in the input stream to read from
+     * @param consumer receives each value
+     * @return the number of values read
+     */
+    <T> long readAll(InputStream in, Consumer<? super T> consumer);
+}
@@ -0,0 +1,49 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.cognitect.transit;
+
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes many top-level values to one stream using several threads. Since
+ * the write cache is reset for every top-level value, batches of values
+ * are encoded independently of each other and then written out in order,
+ * giving the same bytes as writing the values one by one with a Writer.
+ */
+public interface ParallelWriter<T> {
+    /**
+     * Writes all values to an output stream, in iteration order. The
+     * values are taken from the iterator on the calling thread. If a value
+     * can't be written, the values before its batch may already have been
+     * written to the stream.
+     * @param out the output stream to write to
+     * @param values the values to write
+     * @return the number of values written
+     */
+    long writeAll(OutputStream out, Iterable<? extends T> values);
+
+    /**
+     * Writes all values of a sequential stream to an output stream, in
+     * encounter order.
+     * @param out the output stream to write to
+     * @param values the values to write
+     * @return the number of values written
+     */
+    default long writeAll(OutputStream out, Stream<? extends T> values) {
+        return writeAll(out, values.<T>map(v -> v)::iterator);
+    }
+}
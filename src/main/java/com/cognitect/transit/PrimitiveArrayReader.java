@@ -0,0 +1,40 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.cognitect.transit;
+
+/**
+ * An ArrayReader for arrays of numbers. Parsers hand integers and floats
+ * that fit a long or double to addLong and addDouble without boxing them;
+ * anything else still goes to add.
+ */
+public interface PrimitiveArrayReader<G,A> extends ArrayReader<G,A,Object> {
+
+    /**
+     * Adds an integer to the result
+     * @param a gestational result
+     * @param item an integer
+     * @return a new result
+     */
+    G addLong(G a, long item);
+
+    /**
+     * Adds a floating point number to the result
+     * @param a gestational result
+     * @param item a floating point number
+     * @return a new result
+     */
+    G addDouble(G a, double item);
+}
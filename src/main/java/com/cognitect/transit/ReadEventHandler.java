@@ -0,0 +1,69 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.cognitect.transit;
+
+/**
+ * Receives a transit value as a sequence of events instead of a built value,
+ * see {@link Reader#readEvents(ReadEventHandler)}. Cache codes are resolved and
+ * tagged values are decoded by the reader's handlers before they are
+ * reported; only maps, arrays and the collection tags set, list and cmap
+ * are reported piecewise, so a document of any size can be processed in
+ * constant memory. All methods do nothing by default.
+ */
+public interface ReadEventHandler {
+
+    /**
+     * Called at the start of a map, including maps written as cmap
+     */
+    default void startMap() {}
+
+    /**
+     * Called with each map key, followed by the events for its value.
+     * Keys are always reported as decoded values.
+     */
+    default void key(Object key) {}
+
+    /**
+     * Called at the end of a map
+     */
+    default void endMap() {}
+
+    /**
+     * Called at the start of an array
+     */
+    default void startArray() {}
+
+    /**
+     * Called at the end of an array
+     */
+    default void endArray() {}
+
+    /**
+     * Called before the events for the representation of a set or list
+     * @param tag the tag, "set" or "list"
+     */
+    default void startTagged(String tag) {}
+
+    /**
+     * Called after the events for the representation of a set or list
+     */
+    default void endTagged() {}
+
+    /**
+     * Called with each scalar or decoded tagged value
+     */
+    default void value(Object value) {}
+}
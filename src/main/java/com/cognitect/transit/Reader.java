@@ -15,7 +15,13 @@
 package com.cognitect.transit;
 
 import java.io.EOFException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Interface for reading values in transit format
@@ -63,4 +69,54 @@ public interface Reader {
         return cnt;
     }
 
+    /**
+     * Reads a single value from an input source, reporting it to handler
+     * piece by piece instead of building it
+     * @param handler receives the events making up the value
+     * @return false if EOF was reached before a value, true otherwise
+     */
+    default boolean readEvents(ReadEventHandler handler) {
+        throw new UnsupportedOperationException("Event reading is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Reads a single value from an input source, which must be an array
+     * (or a set or list), one element at a time. Each element is decoded
+     * when the iterator gets to it. The iterator must be exhausted before
+     * anything else is read from this reader.
+     * @return an iterator over the elements of the value
+     */
+    default <T> Iterator<T> readElements() {
+        throw new UnsupportedOperationException("Element reading is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Advances over a single value without decoding it
+     * @return false if EOF was reached before a value, true otherwise
+     */
+    default boolean skip() {
+        throw new UnsupportedOperationException("Skipping is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Reads a single value from an input source, which must be an array
+     * (or a set or list), decoding only the elements at the given indexes.
+     * The other elements are skipped without being built.
+     * @param indexes the indexes of the elements to decode
+     * @return the selected elements, in the order of indexes
+     * @throws IndexOutOfBoundsException if an index is not in the array
+     */
+    default <T> List<T> readSelected(int... indexes) {
+        throw new UnsupportedOperationException("Selective reading is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Like {@link #readElements()}, as a sequential stream
+     * @return a stream of the elements of the value
+     */
+    default <T> Stream<T> streamElements() {
+        Iterator<T> elements = readElements();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false);
+    }
+
 }
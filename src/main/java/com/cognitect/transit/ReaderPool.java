@@ -0,0 +1,33 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.cognitect.transit;
+
+import java.io.InputStream;
+
+/**
+ * A pool of readers that can be shared by many threads. Each call reads
+ * one value from the given input stream using state taken from the pool,
+ * so caches and handler lookups are reused across calls instead of being
+ * built for every stream.
+ */
+public interface ReaderPool {
+    /**
+     * Reads a single value from an input stream. The stream is not closed,
+     * but may have been read past the end of the value.
+     * @param in the input stream to read from
+     * @return the value
+     */
+    <T> T read(InputStream in);
+}
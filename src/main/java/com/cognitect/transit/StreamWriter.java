@@ -0,0 +1,82 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.cognitect.transit;
+
+/**
+ * Writes a single top-level transit value piece by piece, see
+ * {@link Writer#stream()}. Arrays and maps are opened with beginArray or
+ * beginMap and closed with end; in between, values are written with value
+ * and nested begin/end calls, each map value preceded by its key. All
+ * values share the write cache of the top-level value. Msgpack writes the
+ * size of arrays and maps up front, so it needs the sized begin methods,
+ * and the number of elements written must match.
+ */
+public interface StreamWriter {
+
+    /**
+     * Starts an array of unknown size (JSON only)
+     * @return this stream writer
+     */
+    StreamWriter beginArray();
+
+    /**
+     * Starts an array
+     * @param size the number of elements that will be written
+     * @return this stream writer
+     */
+    StreamWriter beginArray(long size);
+
+    /**
+     * Starts a map of unknown size (JSON only). The keys must all be
+     * values that can be written as map keys.
+     * @return this stream writer
+     */
+    StreamWriter beginMap();
+
+    /**
+     * Starts a map. The keys must all be values that can be written as
+     * map keys.
+     * @param size the number of entries that will be written
+     * @return this stream writer
+     */
+    StreamWriter beginMap(long size);
+
+    /**
+     * Writes the key of the next map entry
+     * @param key the key
+     * @return this stream writer
+     */
+    StreamWriter key(Object key);
+
+    /**
+     * Writes a complete value as the next element or map value
+     * @param o the value
+     * @return this stream writer
+     */
+    StreamWriter value(Object o);
+
+    /**
+     * Ends the innermost open array or map. Ending the top-level value
+     * completes the write and flushes according to the writer's policy.
+     * @return this stream writer
+     */
+    StreamWriter end();
+
+    /**
+     * Flushes what has been written so far to the underlying output stream
+     */
+    void flush();
+}
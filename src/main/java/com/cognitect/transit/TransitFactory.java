@@ -19,7 +19,12 @@ import com.cognitect.transit.impl.*;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 /**
@@ -30,7 +35,13 @@ public class TransitFactory {
     /**
      * Transit formats
      */
-    public static enum Format { JSON, MSGPACK, JSON_VERBOSE }
+    public static enum Format { JSON, MSGPACK, JSON_VERBOSE, MSGPACK_CORE }
+
+    /**
+     * Types that time values ("m" and "t" tags) can be read as; instants
+     * are in UTC
+     */
+    public static enum TimeRepresentation { DATE, INSTANT, ZONED_DATE_TIME, LOCAL_DATE }
 
     /**
      * Creates a writer instance.
@@ -89,14 +100,30 @@ public class TransitFactory {
      * @return a writer
      */
     public static <T> Writer<T> writer(Format type, OutputStream out, Map<Class, WriteHandler<?, ?>> customHandlers, WriteHandler<?, ?> defaultWriteHandler, Function<Object,Object> transform) {
+        return writer(type, out, new WriterOptions()
+                .withHandlers(customHandlers)
+                .withDefaultWriteHandler(defaultWriteHandler)
+                .withTransform(transform));
+    }
+
+    /**
+     * Creates a writer instance.
+     * @param type format to write in
+     * @param out output stream to write to
+     * @param options handlers, transform and flush policy to use
+     * @return a writer
+     */
+    public static <T> Writer<T> writer(Format type, OutputStream out, WriterOptions options) {
         try {
             switch (type) {
                 case MSGPACK:
-                    return WriterFactory.getMsgpackInstance(out, customHandlers, defaultWriteHandler, transform);
+                    return WriterFactory.getMsgpackInstance(out, options);
+                case MSGPACK_CORE:
+                    return WriterFactory.getMsgpackCoreInstance(out, options);
                 case JSON:
-                    return WriterFactory.getJsonInstance(out, customHandlers, defaultWriteHandler, false, transform);
+                    return WriterFactory.getJsonInstance(out, options, false);
                 case JSON_VERBOSE:
-                    return WriterFactory.getJsonInstance(out, customHandlers, defaultWriteHandler, true, transform);
+                    return WriterFactory.getJsonInstance(out, options, true);
                 default:
                     throw new IllegalArgumentException("Unknown Writer type: " + type.toString());
             }
@@ -161,6 +188,8 @@ public class TransitFactory {
                     return ReaderFactory.getJsonInstance(in, customHandlers, customDefaultHandler);
                 case MSGPACK:
                     return ReaderFactory.getMsgpackInstance(in, customHandlers, customDefaultHandler);
+                case MSGPACK_CORE:
+                    return ReaderFactory.getMsgpackCoreInstance(in, customHandlers, customDefaultHandler);
                 default:
                     throw new IllegalArgumentException("Unknown Reader type: " + type.toString());
             }
@@ -169,6 +198,215 @@ public class TransitFactory {
         }
     }
 
+    /**
+     * Creates a reader instance that decodes only the map entries on the
+     * given key paths. All other entries are skipped without being built.
+     * A path is a list of map keys (keywords, strings, ...) from the
+     * outside in; arrays, sets and lists along the way apply the path to
+     * each of their elements, and other tagged values are decoded whole.
+     * For example, the paths [[:id], [:user, :name]] read a stream of
+     * records into maps holding just :id and :user, with :user holding
+     * just :name.
+     * @param type the format to read in
+     * @param in the input stream to read from
+     * @param customHandlers a map of custom ReadHandlers to use in addition
+     *                       or in place of the default ReadHandlers
+     * @param customDefaultHandler a DefaultReadHandler to use for processing
+     *                             encoded values for which there is no read handler
+     * @param keyPaths the key paths to decode
+     * @return a reader
+     */
+    public static Reader reader(Format type, InputStream in,
+                                Map<String, ReadHandler<?, ?>> customHandlers,
+                                DefaultReadHandler<?> customDefaultHandler,
+                                Collection<? extends List<?>> keyPaths) {
+        return ReaderFactory.project(reader(type, in, customHandlers, customDefaultHandler), keyPaths);
+    }
+
+    /**
+     * Creates a reader instance that reads from a byte array.
+     * @param type the format to read in
+     * @param bytes the bytes to read from
+     * @return a reader
+     */
+    public static Reader reader(Format type, byte[] bytes) {
+        return reader(type, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Creates a reader instance that reads from a region of a byte array.
+     * @param type the format to read in
+     * @param bytes the bytes to read from
+     * @param offset the index of the first byte to read
+     * @param length the number of bytes to read
+     * @return a reader
+     */
+    public static Reader reader(Format type, byte[] bytes, int offset, int length) {
+        return reader(type, bytes, offset, length, null, null);
+    }
+
+    /**
+     * Creates a reader instance that reads from a region of a byte array.
+     * @param type the format to read in
+     * @param bytes the bytes to read from
+     * @param offset the index of the first byte to read
+     * @param length the number of bytes to read
+     * @param customHandlers a map of custom ReadHandlers to use in addition
+     *                       or in place of the default ReadHandlers
+     * @param customDefaultHandler a DefaultReadHandler to use for processing
+     *                             encoded values for which there is no read handler
+     * @return a reader
+     */
+    public static Reader reader(Format type, byte[] bytes, int offset, int length,
+                                Map<String, ReadHandler<?, ?>> customHandlers,
+                                DefaultReadHandler<?> customDefaultHandler) {
+        switch (type) {
+            case JSON:
+            case JSON_VERBOSE:
+                return ReaderFactory.getJsonInstance(bytes, offset, length, customHandlers, customDefaultHandler);
+            case MSGPACK:
+                return ReaderFactory.getMsgpackInstance(bytes, offset, length, customHandlers, customDefaultHandler);
+            case MSGPACK_CORE:
+                return ReaderFactory.getMsgpackCoreInstance(bytes, offset, length, customHandlers, customDefaultHandler);
+            default:
+                throw new IllegalArgumentException("Unknown Reader type: " + type.toString());
+        }
+    }
+
+    /**
+     * Creates a reader instance that reads the remaining bytes of a heap,
+     * direct or memory-mapped byte buffer. The buffer's position is not
+     * changed by reading.
+     * @param type the format to read in
+     * @param buffer the buffer to read from
+     * @return a reader
+     */
+    public static Reader reader(Format type, ByteBuffer buffer) {
+        return reader(type, buffer, null, null);
+    }
+
+    /**
+     * Creates a reader instance that reads the remaining bytes of a heap,
+     * direct or memory-mapped byte buffer. The buffer's position is not
+     * changed by reading.
+     * @param type the format to read in
+     * @param buffer the buffer to read from
+     * @param customHandlers a map of custom ReadHandlers to use in addition
+     *                       or in place of the default ReadHandlers
+     * @param customDefaultHandler a DefaultReadHandler to use for processing
+     *                             encoded values for which there is no read handler
+     * @return a reader
+     */
+    public static Reader reader(Format type, ByteBuffer buffer,
+                                Map<String, ReadHandler<?, ?>> customHandlers,
+                                DefaultReadHandler<?> customDefaultHandler) {
+        switch (type) {
+            case JSON:
+            case JSON_VERBOSE:
+                return ReaderFactory.getJsonInstance(buffer, customHandlers, customDefaultHandler);
+            case MSGPACK:
+                return ReaderFactory.getMsgpackInstance(buffer, customHandlers, customDefaultHandler);
+            case MSGPACK_CORE:
+                return ReaderFactory.getMsgpackCoreInstance(buffer, customHandlers, customDefaultHandler);
+            default:
+                throw new IllegalArgumentException("Unknown Reader type: " + type.toString());
+        }
+    }
+
+    /**
+     * Creates a pool of writers that can be shared by many threads.
+     * @param type format to write in
+     * @return a writer pool
+     */
+    public static <T> WriterPool<T> writerPool(Format type) {
+        return writerPool(type, new WriterOptions());
+    }
+
+    /**
+     * Creates a pool of writers that can be shared by many threads.
+     * @param type format to write in
+     * @param options handlers, transform and flush policy to use
+     * @return a writer pool
+     */
+    public static <T> WriterPool<T> writerPool(Format type, WriterOptions options) {
+        return new WriterPoolImpl<T>(type, options);
+    }
+
+    /**
+     * Creates a pool of readers that can be shared by many threads.
+     * @param type the format to read in
+     * @return a reader pool
+     */
+    public static ReaderPool readerPool(Format type) {
+        return readerPool(type, null, null);
+    }
+
+    /**
+     * Creates a pool of readers that can be shared by many threads.
+     * @param type the format to read in
+     * @param customHandlers a map of custom ReadHandlers to use in addition
+     *                       or in place of the default ReadHandlers
+     * @param customDefaultHandler a DefaultReadHandler to use for processing
+     *                             encoded values for which there is no read handler
+     * @return a reader pool
+     */
+    public static ReaderPool readerPool(Format type,
+                                        Map<String, ReadHandler<?, ?>> customHandlers,
+                                        DefaultReadHandler<?> customDefaultHandler) {
+        return new ReaderPoolImpl(type, customHandlers, customDefaultHandler);
+    }
+
+    /**
+     * Creates a reader that decodes a stream of top-level values on the
+     * common fork/join pool, handing them on in stream order.
+     * @param type the format to read in
+     * @return a parallel reader
+     */
+    public static ParallelReader parallelReader(Format type) {
+        return parallelReader(type, null, null, null, true);
+    }
+
+    /**
+     * Creates a reader that decodes a stream of top-level values using
+     * several threads.
+     * @param type the format to read in
+     * @param customHandlers a map of custom ReadHandlers to use in addition
+     *                       or in place of the default ReadHandlers
+     * @param customDefaultHandler a DefaultReadHandler to use for processing
+     *                             encoded values for which there is no read handler
+     * @param executor runs the decoding, the common fork/join pool if null
+     * @param ordered whether values are handed on in stream order
+     * @return a parallel reader
+     */
+    public static ParallelReader parallelReader(Format type,
+                                                Map<String, ReadHandler<?, ?>> customHandlers,
+                                                DefaultReadHandler<?> customDefaultHandler,
+                                                Executor executor, boolean ordered) {
+        return new ParallelReaderImpl(type, customHandlers, customDefaultHandler, executor, ordered);
+    }
+
+    /**
+     * Creates a writer that encodes many top-level values using several
+     * threads.
+     * @param type format to write in
+     * @return a parallel writer
+     */
+    public static <T> ParallelWriter<T> parallelWriter(Format type) {
+        return parallelWriter(type, new WriterOptions(), null);
+    }
+
+    /**
+     * Creates a writer that encodes many top-level values using several
+     * threads.
+     * @param type format to write in
+     * @param options handlers, transform and flush policy to use
+     * @param executor runs the encoding, the common fork/join pool if null
+     * @return a parallel writer
+     */
+    public static <T> ParallelWriter<T> parallelWriter(Format type, WriterOptions options, Executor executor) {
+        return new ParallelWriterImpl<T>(type, options, executor);
+    }
+
     /**
      * Converts a string or keyword to a keyword
      * @param o A string or a keyword
@@ -180,9 +418,9 @@ public class TransitFactory {
         else if (o instanceof String) {
             String s = (String) o;
             if (s.charAt(0) == ':')
-                return new KeywordImpl(s.substring(1));
+                return KeywordImpl.intern(s.substring(1));
             else
-                return new KeywordImpl(s);
+                return KeywordImpl.intern(s);
         }
         else throw new IllegalArgumentException("Cannot make keyword from " + o.getClass().getSimpleName());
     }
@@ -198,9 +436,9 @@ public class TransitFactory {
         else if (o instanceof String) {
             String s = (String) o;
             if (s.charAt(0) == ':')
-                return new SymbolImpl(s.substring(1));
+                return SymbolImpl.intern(s.substring(1));
             else
-                return new SymbolImpl(s);
+                return SymbolImpl.intern(s);
         }
         else throw new IllegalArgumentException("Cannot make symbol from " + o.getClass().getSimpleName());
     }
@@ -300,6 +538,20 @@ public class TransitFactory {
         return new ReadHandlerMap(customHandlers);
     }
 
+    /**
+     * Returns read handlers for time values that produce the given type
+     * instead of java.util.Date. Pass them as custom handlers, or merge
+     * them into your own, to make it the default time representation.
+     * @param representation the type to read time values as
+     * @return a map of tag to ReadHandler for the "m" and "t" tags
+     */
+    public static Map<String, ReadHandler<?, ?>> timeReadHandlers(TimeRepresentation representation) {
+        Map<String, ReadHandler<?, ?>> handlers = new HashMap<String, ReadHandler<?, ?>>();
+        handlers.put("m", new ReadHandlers.TimeReadHandler(representation));
+        handlers.put("t", new ReadHandlers.VerboseTimeReadHandler(representation));
+        return handlers;
+    }
+
     /**
      * Returns a map of classes to Handlers that is used by default
      * @return class to Handler map
@@ -23,4 +23,29 @@ public interface Writer<T> {
      * @param o the value to write
      */
     void write(T o);
+
+    /**
+     * Flushes any buffered output to the underlying output stream. Only
+     * needed when the writer was created with a flush policy that does
+     * not flush after each write.
+     */
+    default void flush() {}
+
+    /**
+     * Starts a new cache with the next value when writing with a session
+     * cache (see {@link WriterOptions#withSessionCache(boolean)}); the
+     * value is preceded by a marker telling readers to do the same. Does
+     * nothing otherwise.
+     */
+    default void resetCache() {}
+
+    /**
+     * Starts writing a single value piece by piece, for values too large
+     * to build in memory first. The value is complete when its outermost
+     * array or map is ended; no other value may be written before that.
+     * @return the stream writer for the value
+     */
+    default StreamWriter stream() {
+        throw new UnsupportedOperationException("Streaming is not supported by " + getClass().getName());
+    }
 }
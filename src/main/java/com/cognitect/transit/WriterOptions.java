@@ -0,0 +1,189 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.cognitect.transit;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Options for creating a Writer. Instances are immutable; each with*
+ * method returns a copy with one option changed, so a configured instance
+ * can be shared and reused for any number of writers.
+ */
+public final class WriterOptions {
+
+    private Map<Class, WriteHandler<?, ?>> handlers;
+    private WriteHandler<?, ?> defaultWriteHandler;
+    private Function<Object, Object> transform;
+    private FlushPolicy flushPolicy = FlushPolicy.PER_WRITE;
+    private boolean nativeBinary;
+    private boolean typedArrays;
+    private boolean sessionCache;
+    private int cacheResetInterval;
+    private CachePolicy cachePolicy = CachePolicy.RESTART;
+
+    /**
+     * Creates options with the default handlers and flush policy
+     */
+    public WriterOptions() {
+    }
+
+    private WriterOptions(WriterOptions o) {
+        this.handlers = o.handlers;
+        this.defaultWriteHandler = o.defaultWriteHandler;
+        this.transform = o.transform;
+        this.flushPolicy = o.flushPolicy;
+        this.nativeBinary = o.nativeBinary;
+        this.typedArrays = o.typedArrays;
+        this.sessionCache = o.sessionCache;
+        this.cacheResetInterval = o.cacheResetInterval;
+        this.cachePolicy = o.cachePolicy;
+    }
+
+    /**
+     * @param handlers additional WriteHandlers to use in addition
+     *                 to or in place of the default WriteHandlers
+     * @return a copy of these options using the given handlers
+     */
+    public WriterOptions withHandlers(Map<Class, WriteHandler<?, ?>> handlers) {
+        WriterOptions o = new WriterOptions(this);
+        o.handlers = handlers;
+        return o;
+    }
+
+    /**
+     * @param defaultWriteHandler WriteHandler to use for values no other handler applies to
+     * @return a copy of these options using the given default handler
+     */
+    public WriterOptions withDefaultWriteHandler(WriteHandler<?, ?> defaultWriteHandler) {
+        WriterOptions o = new WriterOptions(this);
+        o.defaultWriteHandler = defaultWriteHandler;
+        return o;
+    }
+
+    /**
+     * @param transform a transform function to apply to values before writing
+     * @return a copy of these options using the given transform
+     */
+    public WriterOptions withTransform(Function<Object, Object> transform) {
+        WriterOptions o = new WriterOptions(this);
+        o.transform = transform;
+        return o;
+    }
+
+    /**
+     * @param flushPolicy when to flush the output stream
+     * @return a copy of these options using the given flush policy
+     */
+    public WriterOptions withFlushPolicy(FlushPolicy flushPolicy) {
+        if (flushPolicy == null)
+            throw new IllegalArgumentException("flushPolicy must not be null");
+        WriterOptions o = new WriterOptions(this);
+        o.flushPolicy = flushPolicy;
+        return o;
+    }
+
+    /**
+     * @param nativeBinary if true, msgpack writers write byte arrays as
+     *                     native msgpack bin values instead of base64
+     *                     encoded "~b" strings. Off by default, as older
+     *                     readers only understand the string form. Has no
+     *                     effect on JSON writers.
+     * @return a copy of these options using the given binary encoding
+     */
+    public WriterOptions withNativeBinary(boolean nativeBinary) {
+        WriterOptions o = new WriterOptions(this);
+        o.nativeBinary = nativeBinary;
+        return o;
+    }
+
+    /**
+     * @param typedArrays if true, long[] and double[] are written as arrays
+     *                    tagged "longs" and "doubles", which readers decode
+     *                    back into primitive arrays without boxing. Off by
+     *                    default, as other readers see them as tagged values.
+     *                    Custom handlers for these classes take precedence.
+     * @return a copy of these options using the given array encoding
+     */
+    public WriterOptions withTypedArrays(boolean typedArrays) {
+        WriterOptions o = new WriterOptions(this);
+        o.typedArrays = typedArrays;
+        return o;
+    }
+
+    /**
+     * @param sessionCache if true, the cache of strings already written is
+     *                     kept from one top-level value to the next, so a
+     *                     stream of small messages sends repeated keys and
+     *                     keywords in full only once. A reset marker ahead
+     *                     of the first value puts readers in the same mode.
+     *                     Off by default, as older readers don't understand
+     *                     the marker. Has no effect on verbose JSON writers,
+     *                     writer pools and parallel writers.
+     * @return a copy of these options using the given cache scope
+     */
+    public WriterOptions withSessionCache(boolean sessionCache) {
+        WriterOptions o = new WriterOptions(this);
+        o.sessionCache = sessionCache;
+        return o;
+    }
+
+    /**
+     * @param cacheResetInterval with a session cache, the number of values
+     *                           after which it is reset, so that readers
+     *                           can start over from a later value; 0 (the
+     *                           default) resets only on Writer.resetCache()
+     * @return a copy of these options using the given reset interval
+     */
+    public WriterOptions withCacheResetInterval(int cacheResetInterval) {
+        if (cacheResetInterval < 0)
+            throw new IllegalArgumentException("cacheResetInterval must not be negative");
+        WriterOptions o = new WriterOptions(this);
+        o.cacheResetInterval = cacheResetInterval;
+        return o;
+    }
+
+    /**
+     * @param cachePolicy what the cache does once all codes are in use.
+     *                    Has no effect on verbose JSON writers, writer
+     *                    pools and parallel writers.
+     * @return a copy of these options using the given cache policy
+     */
+    public WriterOptions withCachePolicy(CachePolicy cachePolicy) {
+        if (cachePolicy == null)
+            throw new IllegalArgumentException("cachePolicy must not be null");
+        WriterOptions o = new WriterOptions(this);
+        o.cachePolicy = cachePolicy;
+        return o;
+    }
+
+    public Map<Class, WriteHandler<?, ?>> getHandlers() { return handlers; }
+
+    public WriteHandler<?, ?> getDefaultWriteHandler() { return defaultWriteHandler; }
+
+    public Function<Object, Object> getTransform() { return transform; }
+
+    public FlushPolicy getFlushPolicy() { return flushPolicy; }
+
+    public boolean isNativeBinary() { return nativeBinary; }
+
+    public boolean isTypedArrays() { return typedArrays; }
+
+    public boolean isSessionCache() { return sessionCache; }
+
+    public int getCacheResetInterval() { return cacheResetInterval; }
+
+    public CachePolicy getCachePolicy() { return cachePolicy; }
+}
@@ -0,0 +1,53 @@
+// Copyright 2014 Cognitect. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS-IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.cognitect.transit;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of writers that can be shared by many threads. Each call writes
+ * one complete value to the given output stream, byte array or byte buffer
+ * using a writer taken from the pool, so generators, caches and handler
+ * lookups are reused across calls instead of being built for every stream.
+ */
+public interface WriterPool<T> {
+    /**
+     * Writes a single value to an output stream. All output is handed to
+     * the stream before this returns; the stream is flushed unless the pool
+     * was created with FlushPolicy.MANUAL.
+     * @param out the output stream to write to
+     * @param o the value to write
+     */
+    void write(OutputStream out, T o);
+
+    /**
+     * Writes a single value to a new byte array.
+     * @param o the value to write
+     * @return the encoded value
+     */
+    byte[] writeToBytes(T o);
+
+    /**
+     * Writes a single value into a heap or direct byte buffer, starting at
+     * its current position, which is advanced past the encoded value.
+     * @param target the buffer to write to
+     * @param o the value to write
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the encoded value does not
+     *         fit into the remaining space; the buffer is left unchanged
+     */
+    int writeTo(ByteBuffer target, T o);
+}
@@ -45,12 +45,44 @@ public abstract class AbstractEmitter implements Emitter
 
     protected void emitTagged(String t, Object o, boolean ignored, WriteCache cache) throws Exception {
 
+        emitTagStart(t, cache);
+        if (isTypedArray(o))
+            // typed arrays only tag arrays that are values, not the rep of
+            // another tag, which its read handler expects as a plain array
+            emitArray(o, false, cache);
+        else
+            marshal(o, false, cache);
+        emitTagEnd();
+    }
+
+    private boolean isTypedArray(Object o) {
+        return (o instanceof long[] || o instanceof double[])
+                && writeHandlerMap.getHandler(o) instanceof WriteHandlers.TypedArrayWriteHandler;
+    }
+
+    protected void emitTagStart(String t, WriteCache cache) throws Exception {
+
         emitArrayStart(2L);
         emitString(Constants.ESC_TAG, t, "", false, cache);
-        marshal(o, false, cache);
+    }
+
+    protected void emitTagEnd() throws Exception {
+
         emitArrayEnd();
     }
 
+    protected void emitCmap(Map<Object, Object> m, WriteCache cache) throws Exception {
+
+        emitTagStart("cmap", cache);
+        emitArrayStart(2L * m.size());
+        for (Map.Entry<Object, Object> e : m.entrySet()) {
+            marshal(e.getKey(), false, cache);
+            marshal(e.getValue(), false, cache);
+        }
+        emitArrayEnd();
+        emitTagEnd();
+    }
+
     protected void emitEncoded(String t, WriteHandler<Object, Object> h, Object o, boolean asMapKey, WriteCache cache) throws Exception {
 
         if(t.length() == 1) {
@@ -86,7 +118,42 @@ public abstract class AbstractEmitter implements Emitter
         emitMap(entries, ignored, cache);
     }
 
-    abstract protected void emitMap(Iterable<Map.Entry<Object, Object>> i, boolean ignored, WriteCache cache) throws Exception;
+    protected void emitMap(Iterable<Map.Entry<Object, Object>> i, boolean ignored, WriteCache cache) throws Exception {
+
+        emitMapBegin(Util.mapSize(i), cache);
+        for (Map.Entry<Object, Object> e : i) {
+            marshal(e.getKey(), true, cache);
+            marshal(e.getValue(), false, cache);
+        }
+        emitMapFinish();
+    }
+
+    /**
+     * Starts a map whose keys are all written as map keys
+     * @param size the number of entries, null if unknown and !needsSizes()
+     */
+    protected void emitMapBegin(Long size, WriteCache cache) throws Exception {
+
+        emitMapStart(size);
+    }
+
+    protected void emitMapFinish() throws Exception {
+
+        emitMapEnd();
+    }
+
+    protected boolean stringableKey(Object key) {
+
+        return WriteHandlers.MapWriteHandler.stringableKey(writeHandlerMap, key);
+    }
+
+    /**
+     * Whether the encoding writes the size of arrays and maps up front
+     */
+    protected boolean needsSizes() {
+
+        return true;
+    }
 
     protected void emitArray(Object o, boolean ignored, WriteCache cache) throws Exception {
 
@@ -153,14 +220,91 @@ public abstract class AbstractEmitter implements Emitter
         emitArrayEnd();
     }
 
+    private static WriteHandlers.MapWriteHandler mapHandler(WriteHandler<?, ?> h) {
+        Object handler = h;
+        return (handler instanceof WriteHandlers.MapWriteHandler) ? (WriteHandlers.MapWriteHandler) handler : null;
+    }
+
+    /**
+     * Writes a UUID the way UUIDWriteHandler would have it written, as a
+     * "u" string or a tagged pair of longs, without building the rep
+     */
+    protected void emitUUID(UUID u, boolean asMapKey, WriteCache cache) throws Exception {
+        if (prefersStrings() || asMapKey) {
+            emitString(null, null, Util.uuidString("~u", u), asMapKey, cache);
+        } else {
+            emitTagStart("u", cache);
+            emitArrayStart(2L);
+            emitInteger(u.getMostSignificantBits(), false, cache);
+            emitInteger(u.getLeastSignificantBits(), false, cache);
+            emitArrayEnd();
+            emitTagEnd();
+        }
+    }
+
+    /**
+     * Writes a ground type that has its default handler straight from the
+     * value, the same way marshal would after calling tag and rep
+     * @return false if the value needs the handler after all
+     */
+    private boolean marshalGround(int type, Object o, boolean asMapKey, WriteCache cache) throws Exception {
+        switch (type) {
+            case WriteHandlerMap.STRING:
+                emitString(null, null, escape((String) o), asMapKey, cache);
+                return true;
+            case WriteHandlerMap.LONG:
+                emitInteger(((Long) o).longValue(), asMapKey, cache);
+                return true;
+            case WriteHandlerMap.INTEGER:
+                emitInteger(((Integer) o).longValue(), asMapKey, cache);
+                return true;
+            case WriteHandlerMap.DOUBLE:
+                double d = (Double) o;
+                if (Double.isNaN(d) || Double.isInfinite(d))
+                    return false; // tagged "z"
+                emitDouble(d, asMapKey, cache);
+                return true;
+            case WriteHandlerMap.BOOLEAN:
+                emitBoolean(((Boolean) o).booleanValue(), asMapKey, cache);
+                return true;
+            case WriteHandlerMap.KEYWORD:
+                // toString is ":" plus the name, so no substring is needed
+                emitString(Constants.ESC_STR, null, o.toString(), asMapKey, cache);
+                return true;
+            case WriteHandlerMap.UUID:
+                emitUUID((UUID) o, asMapKey, cache);
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     protected void marshal(Object o, boolean asMapKey, WriteCache cache) throws Exception {
         if(null != this.transform) {
             o = this.transform.apply(o);
         }
-        WriteHandler<Object, Object> h = writeHandlerMap.getHandler(o);
+        WriteHandlerMap.Resolved r = writeHandlerMap.lookup(o);
+        if (r.type != WriteHandlerMap.OTHER && marshalGround(r.type, o, asMapKey, cache))
+            return;
+        WriteHandler<Object, Object> h = r.handler;
         if (h == null) h = defaultWriteHandler;
 
+        WriteHandlers.MapWriteHandler mh = mapHandler(h);
+        if (mh != null) {
+            // classify the keys once and stream the entries, rather than
+            // going through tag and rep, which each classify the keys and
+            // copy cmap entries into a list
+            Map<Object, Object> m = (Map<Object, Object>) o;
+            if (mh.stringableKeys(m))
+                emitMap(m.entrySet(), asMapKey, cache);
+            else if (asMapKey)
+                throw new Exception("Cannot be used as a map key " + o);
+            else
+                emitCmap(m, cache);
+            return;
+        }
+
         boolean supported = false;
         if(h != null) { // TODO: maybe remove getWriteHandler call and this check and just call tag
             String t = h.tag(o);
@@ -187,7 +331,6 @@ public abstract class AbstractEmitter implements Emitter
                     else
                         emitEncoded(t, h, o, asMapKey, cache);
                 }
-                flushWriter();
             }
         }
 
@@ -201,6 +344,11 @@ public abstract class AbstractEmitter implements Emitter
         if (h == null) {
             h = defaultWriteHandler;
         }
+        if (mapHandler(h) != null) {
+            // maps are never quoted, no need to classify their keys for the tag
+            marshal(o, false, cache);
+            return;
+        }
         String tag = h.tag(o);
         if (tag == null) {
             throw new Exception("Not supported: " + o);
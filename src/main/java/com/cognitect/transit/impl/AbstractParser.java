@@ -8,9 +8,14 @@ import com.cognitect.transit.DefaultReadHandler;
 import com.cognitect.transit.MapReader;
 import com.cognitect.transit.ReadHandler;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 public abstract class AbstractParser implements Parser {
 
@@ -23,14 +28,34 @@ public abstract class AbstractParser implements Parser {
             }
         };
 
+    /**
+     * @deprecated time values are formatted and parsed with Iso8601
+     */
+    @Deprecated
     public static SimpleDateFormat getDateTimeFormat() {
         return dateTimeFormat.get();
     }
 
+    // one-character tags, so that "~x..." is decoded without a substring
+    // for the tag
+    private static final String[] TAGS = new String[128];
+
+    static {
+        for (int c = 0; c < TAGS.length; c++)
+            TAGS[c] = String.valueOf((char) c);
+    }
+
+    private static String tag(char c) {
+        return (c < TAGS.length) ? TAGS[c] : String.valueOf(c);
+    }
+
     protected final Map<String, ReadHandler<?,?>> handlers;
     private final DefaultReadHandler<?> defaultHandler;
+    // "u" strings can be decoded straight from a char buffer
+    private final boolean defaultUUIDs;
     protected MapReader<Object, Map<Object, Object>, Object, Object> mapBuilder;
     protected ArrayReader<Object, List<Object>, Object> listBuilder;
+    protected Projection projection;
 
     @SuppressWarnings("unchecked")
     protected AbstractParser(Map<String, ReadHandler<?,?>> handlers,
@@ -39,6 +64,8 @@ public abstract class AbstractParser implements Parser {
                              ArrayReader<?, List<Object>, Object> listBuilder) {
         this.handlers = handlers;
         this.defaultHandler = defaultHandler;
+        ReadHandler<?, ?> uuidHandler = handlers.get("u");
+        this.defaultUUIDs = uuidHandler != null && uuidHandler.getClass() == ReadHandlers.UUIDReadHandler.class;
         this.mapBuilder = (MapReader<Object, Map<Object, Object>, Object, Object>) mapBuilder;
         this.listBuilder = (ArrayReader<Object, List<Object>, Object>) listBuilder;
     }
@@ -60,6 +87,187 @@ public abstract class AbstractParser implements Parser {
         }
     }
 
+    /**
+     * Stands for a map key the projection doesn't select
+     */
+    protected static final Object SKIPPED = new Object();
+
+    /**
+     * Stands for a top-level value that doesn't start with a string
+     */
+    protected static final Object NOT_A_STRING = new Object();
+
+    /**
+     * Resolves a map key read as the string s under the projection without
+     * decoding it unless it is selected (or a tag)
+     * @return the decoded key, or SKIPPED
+     */
+    protected Object projectKey(String s, ReadCache cache) {
+        int i = cache.codeIndex(s);
+        String enc;
+        if (i < 0) {
+            cache.cacheRaw(s, true);
+            enc = s;
+        } else if (cache.isRaw(i)) {
+            enc = (String) cache.entry(i);
+        } else {
+            Object key = cache.entry(i);
+            return (key instanceof Tag || projection.selects(key)) ? key : SKIPPED;
+        }
+        Boolean selected = enc.startsWith(Constants.ESC_TAG) ? Boolean.TRUE : projection.selectsEncoded(enc);
+        if (selected == Boolean.FALSE)
+            return SKIPPED;
+        Object key = (i < 0) ? parseString(enc) : cache.cacheRead(s, true, this);
+        return (selected != null || key instanceof Tag || projection.selects(key)) ? key : SKIPPED;
+    }
+
+    public void setProjection(Projection projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Adds the entry under key if the projection selects it, decoding the
+     * value with the key's own projection; otherwise skips the value
+     */
+    protected Object addProjected(MapReader<Object, ?, Object, Object> mr, Object mb, Object key, ReadCache cache) throws IOException {
+        Projection p = projection;
+        if (key == SKIPPED || !p.selects(key)) {
+            skipVal(false, cache);
+            return mb;
+        }
+        projection = p.get(key);
+        try {
+            return mr.add(mb, key, parseVal(false, cache));
+        } finally {
+            projection = p;
+        }
+    }
+
+    /**
+     * Tags whose array representation is reported piecewise by parseEvents
+     */
+    protected static boolean isCollectionTag(String tag) {
+        return tag.equals("set") || tag.equals("list");
+    }
+
+    /**
+     * Iterates over the elements of an array one by one as they are parsed
+     */
+    protected static abstract class Elements implements Iterator<Object> {
+
+        private Boolean more;
+
+        /**
+         * Whether another element follows; consumes the end of the
+         * array if not
+         */
+        protected abstract boolean hasMore() throws IOException;
+
+        protected abstract Object parseNext() throws IOException;
+
+        /**
+         * Advances over the next element; with keepCache the cacheable
+         * strings in it are still added to the read cache
+         */
+        protected abstract void skipNext(boolean keepCache) throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (more == null) {
+                try {
+                    more = hasMore();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return more;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            more = null;
+            try {
+                return parseNext();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Skips the next element without building it
+         */
+        public void skip() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            more = null;
+            try {
+                skipNext(true);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Skips all remaining elements. Without keepCache, nothing read
+         * afterwards may refer to strings cached in them, as they are not
+         * added to the cache.
+         */
+        public void skipRest(boolean keepCache) {
+            try {
+                while (hasNext()) {
+                    more = null;
+                    skipNext(keepCache);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public List<Object> parseSelected(ReadCache cache, int[] indexes) throws IOException {
+        int[] sorted = indexes.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] < 0)
+            throw new IndexOutOfBoundsException("Index " + sorted[0]);
+
+        Elements elements = (Elements) parseElements(cache);
+        Object[] selected = new Object[sorted.length];
+        int k = 0;
+        int i = 0;
+        for (; k < sorted.length && elements.hasNext(); i++) {
+            if (sorted[k] == i) {
+                Object val = elements.next();
+                while (k < sorted.length && sorted[k] == i)
+                    selected[k++] = val;
+            } else {
+                elements.skip();
+            }
+        }
+        elements.skipRest(cache.isSession());
+        if (k < sorted.length)
+            throw new IndexOutOfBoundsException("Index " + sorted[k] + ", size " + i);
+
+        List<Object> result = new ArrayList<Object>(indexes.length);
+        for (int index : indexes)
+            result.add(selected[Arrays.binarySearch(sorted, index)]);
+        return result;
+    }
+
+    /**
+     * Whether a string value starting with c0, c1 is cacheable when long
+     * enough; map keys are cacheable regardless
+     */
+    protected static boolean isCacheablePrefix(int c0, int c1) {
+        return c0 == Constants.ESC && (c1 == ':' || c1 == '$' || c1 == '#');
+    }
+
+    protected static RuntimeException notAnArray(String what) {
+        return new RuntimeException("Cannot read elements of " + what + ", not an array");
+    }
+
     protected Object parseString(Object o) {
         if (o instanceof String) {
             String s = (String) o;
@@ -74,7 +282,7 @@ public abstract class AbstractParser implements Parser {
                             case Constants.TAG:
                                 return new Tag(s.substring(2));
                             default:
-                                return decode(s.substring(1, 2), s.substring(2));
+                                return decode(tag(s.charAt(1)), s.substring(2));
                         }
                     }
                     case Constants.SUB: {
@@ -87,4 +295,41 @@ public abstract class AbstractParser implements Parser {
         }
         return o;
     }
+
+    /**
+     * Same as parseString for the string held in
+     * chars[offset, offset + length), allocating only the decoded rep
+     */
+    protected Object parseString(char[] chars, int offset, int length) {
+        if (length > 1) {
+            switch (chars[offset]) {
+                case Constants.ESC: {
+                    switch (chars[offset + 1]) {
+                        case Constants.ESC:
+                        case Constants.SUB:
+                        case Constants.RESERVED:
+                            return new String(chars, offset + 1, length - 1);
+                        case Constants.TAG:
+                            return new Tag(new String(chars, offset + 2, length - 2));
+                        case 'u':
+                            if (defaultUUIDs) {
+                                Object u = Util.parseUUID(chars, offset + 2, length - 2);
+                                if (u != null)
+                                    return u;
+                            }
+                            // not in canonical form, let the handler deal with it
+                            return decode("u", new String(chars, offset + 2, length - 2));
+                        default:
+                            return decode(tag(chars[offset + 1]), new String(chars, offset + 2, length - 2));
+                    }
+                }
+                case Constants.SUB: {
+                    if (chars[offset + 1] == ' ') {
+                        return Constants.MAP_AS_ARRAY;
+                    }
+                }
+            }
+        }
+        return new String(chars, offset, length);
+    }
 }
@@ -0,0 +1,78 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import java.util.Arrays;
+
+/**
+ * Chooses which cache code a new string takes once all of them are in
+ * use, for the CLOCK cache policy. Writer and reader keep one each and
+ * feed it the same uses and misses, so they always choose alike.
+ *
+ * A string is only admitted when the doorkeeper, a small bit set of
+ * hashes, has seen it before since the cache filled up; strings that
+ * occur once never displace anything. An admitted string takes the code
+ * the clock hand stops at, which passes over (and clears) the codes used
+ * since it last came by.
+ */
+class CacheClock {
+
+    private static final int DOORKEEPER_BITS = 1 << 13;
+    // the doorkeeper forgets everything after this many strings, so that
+    // its bits don't all end up set
+    private static final int DOORKEEPER_CAPACITY = WriteCache.MAX_CACHE_ENTRIES;
+
+    private final boolean[] used = new boolean[WriteCache.MAX_CACHE_ENTRIES];
+    private final long[] doorkeeper = new long[DOORKEEPER_BITS / 64];
+    private int seen;
+    private int hand;
+    private boolean replacing;
+
+    /**
+     * Notes a use of the entry with the given code
+     */
+    void use(int code) {
+        used[code] = true;
+    }
+
+    /**
+     * @param hash String.hashCode of the string to cache
+     * @return the code to cache the string under, replacing its entry, or
+     * -1 if the string is not admitted
+     */
+    int replace(int hash) {
+        replacing = true;
+        int bit = (hash * 0x9E3779B9) >>> (32 - 13);
+        long mask = 1L << bit;
+        if ((doorkeeper[bit >>> 6] & mask) == 0) {
+            if (++seen == DOORKEEPER_CAPACITY) {
+                Arrays.fill(doorkeeper, 0L);
+                seen = 0;
+            }
+            doorkeeper[bit >>> 6] |= mask;
+            return -1;
+        }
+
+        while (used[hand]) {
+            used[hand] = false;
+            hand = (hand + 1) % WriteCache.MAX_CACHE_ENTRIES;
+        }
+        int code = hand;
+        hand = (hand + 1) % WriteCache.MAX_CACHE_ENTRIES;
+        return code;
+    }
+
+    /**
+     * Starts over with an empty cache, of which codes below taken were in use
+     */
+    void clear(int taken) {
+        Arrays.fill(used, 0, taken, false);
+        if (replacing) {
+            Arrays.fill(doorkeeper, 0L);
+            seen = 0;
+            hand = 0;
+            replacing = false;
+        }
+    }
+}
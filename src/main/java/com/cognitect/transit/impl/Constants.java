@@ -11,4 +11,6 @@ public final class Constants {
     public static final String ESC_TAG = String.valueOf(ESC) + TAG;
     public static final String QUOTE_TAG = ESC_TAG + "'";
     public static final String MAP_AS_ARRAY = "^ ";
+    public static final String CACHE_RESET = "^!";
+    public static final String CACHE_CLOCK = "^*";
 }
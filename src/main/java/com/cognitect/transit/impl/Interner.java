@@ -0,0 +1,77 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Canonical instances by string, held weakly so that values nobody
+ * refers to anymore can be collected. Lookups of live values only read
+ * the underlying ConcurrentHashMap and don't lock; entries of collected
+ * values are removed on the next miss.
+ */
+public class Interner<T> {
+
+    private static final class Ref<T> extends WeakReference<T> {
+        final String key;
+
+        Ref(String key, T value, ReferenceQueue<? super T> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Ref<T>> table = new ConcurrentHashMap<String, Ref<T>>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<T>();
+    private final Function<String, T> factory;
+
+    public Interner(Function<String, T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return the instance for key, made by the factory if there is none
+     */
+    public T intern(String key) {
+        Ref<T> ref = table.get(key);
+        T value;
+        if (ref != null && (value = ref.get()) != null)
+            return value;
+
+        expunge();
+        T created = factory.apply(key);
+        Ref<T> createdRef = new Ref<T>(key, created, queue);
+        while (true) {
+            ref = table.putIfAbsent(key, createdRef);
+            if (ref == null)
+                return created;
+            if ((value = ref.get()) != null)
+                return value;
+            // collected since, take its place
+            if (table.replace(key, ref, createdRef))
+                return created;
+        }
+    }
+
+    /**
+     * @return the number of entries, including those of values collected
+     * since the last miss
+     */
+    public int size() {
+        return table.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        Reference<? extends T> r;
+        while ((r = queue.poll()) != null) {
+            Ref<T> ref = (Ref<T>) r;
+            table.remove(ref.key, ref);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Formats and parses the ISO-8601 date-times of the verbose "t" tag
+ * without going through a Calendar or a formatter for the usual four
+ * digit years; other years fall back to java.time. Dates are proleptic
+ * Gregorian and formatted in UTC with millisecond precision.
+ */
+public final class Iso8601 {
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final long SECONDS_PER_DAY = 86400L;
+    // days from 0000-03-01 to 1970-01-01
+    private static final long EPOCH_SHIFT = 719468L;
+    private static final int DAYS_PER_ERA = 146097;
+
+    private static final DateTimeFormatter FALLBACK_FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private Iso8601() {}
+
+    /**
+     * @return millis since the epoch as yyyy-MM-ddTHH:mm:ss.SSSZ
+     */
+    public static String format(long millis) {
+        long days = Math.floorDiv(millis, MILLIS_PER_DAY);
+        int ms = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+
+        long z = days + EPOCH_SHIFT;
+        long era = Math.floorDiv(z, (long) DAYS_PER_ERA);
+        int doe = (int) (z - era * DAYS_PER_ERA);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = (mp < 10) ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + ((month <= 2) ? 1 : 0);
+        if (year < 0 || year > 9999)
+            return FALLBACK_FORMAT.format(Instant.ofEpochMilli(millis));
+
+        char[] c = new char[24];
+        digits(c, 0, (int) year, 4);
+        c[4] = '-';
+        digits(c, 5, month, 2);
+        c[7] = '-';
+        digits(c, 8, day, 2);
+        c[10] = 'T';
+        digits(c, 11, ms / 3600000, 2);
+        c[13] = ':';
+        digits(c, 14, ms / 60000 % 60, 2);
+        c[16] = ':';
+        digits(c, 17, ms / 1000 % 60, 2);
+        c[19] = '.';
+        digits(c, 20, ms % 1000, 3);
+        c[23] = 'Z';
+        return new String(c);
+    }
+
+    private static void digits(char[] c, int offset, int n, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            c[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+    }
+
+    /**
+     * @return millis since the epoch of the date-time s, which is
+     * yyyy-MM-ddTHH:mm:ss with optional fraction and offset (UTC if none)
+     */
+    public static long parseMillis(String s) {
+        return epochSecond(s) * 1000 + nanos(s) / 1000000;
+    }
+
+    /**
+     * @return seconds since the epoch of the date-time s
+     */
+    public static long epochSecond(String s) {
+        if (s.length() < 19 || !isDigit(s, 0) || s.charAt(4) != '-')
+            return fallback(s).getEpochSecond();
+
+        int year = number(s, 0, 4);
+        int month = number(s, 5, 2);
+        int day = number(s, 8, 2);
+        int hour = number(s, 11, 2);
+        int minute = number(s, 14, 2);
+        int second = number(s, 17, 2);
+        if (s.charAt(7) != '-' || (s.charAt(10) != 'T' && s.charAt(10) != 't') ||
+                s.charAt(13) != ':' || s.charAt(16) != ':' ||
+                month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) ||
+                hour > 23 || minute > 59 || second > 59)
+            throw invalid(s);
+
+        int i = 19;
+        if (i < s.length() && s.charAt(i) == '.') {
+            i++;
+            while (i < s.length() && isDigit(s, i))
+                i++;
+        }
+        int offset = offsetSeconds(s, i);
+
+        return daysFromCivil(year, month, day) * SECONDS_PER_DAY +
+                hour * 3600 + minute * 60 + second - offset;
+    }
+
+    /**
+     * @return the nanoseconds of the fraction of a second in s
+     */
+    public static int nanos(String s) {
+        if (s.length() < 19 || !isDigit(s, 0) || s.charAt(4) != '-')
+            return fallback(s).getNano();
+
+        int n = 0;
+        int digits = 0;
+        if (s.length() > 19 && s.charAt(19) == '.') {
+            for (int i = 20; i < s.length() && isDigit(s, i); i++) {
+                if (digits < 9) {
+                    n = n * 10 + (s.charAt(i) - '0');
+                    digits++;
+                }
+            }
+        }
+        for (; digits < 9; digits++)
+            n *= 10;
+        return n;
+    }
+
+    private static int offsetSeconds(String s, int i) {
+        if (i == s.length())
+            return 0;
+        char c = s.charAt(i);
+        if ((c == 'Z' || c == 'z') && i + 1 == s.length())
+            return 0;
+        if (c != '+' && c != '-')
+            throw invalid(s);
+        int rest = s.length() - i - 1;
+        int hours, minutes;
+        if (rest == 2) {
+            hours = number(s, i + 1, 2);
+            minutes = 0;
+        } else if (rest == 4) {
+            hours = number(s, i + 1, 2);
+            minutes = number(s, i + 3, 2);
+        } else if (rest == 5 && s.charAt(i + 3) == ':') {
+            hours = number(s, i + 1, 2);
+            minutes = number(s, i + 4, 2);
+        } else {
+            throw invalid(s);
+        }
+        if (hours > 18 || minutes > 59)
+            throw invalid(s);
+        int seconds = hours * 3600 + minutes * 60;
+        return (c == '-') ? -seconds : seconds;
+    }
+
+    static long daysFromCivil(long year, int month, int day) {
+        long y = (month <= 2) ? year - 1 : year;
+        long era = Math.floorDiv(y, 400L);
+        int yoe = (int) (y - era * 400);
+        int doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * DAYS_PER_ERA + doe - EPOCH_SHIFT;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isDigit(String s, int i) {
+        char c = s.charAt(i);
+        return c >= '0' && c <= '9';
+    }
+
+    private static int number(String s, int offset, int width) {
+        if (offset + width > s.length())
+            throw invalid(s);
+        int n = 0;
+        for (int i = offset; i < offset + width; i++) {
+            if (!isDigit(s, i))
+                throw invalid(s);
+            n = n * 10 + (s.charAt(i) - '0');
+        }
+        return n;
+    }
+
+    // signed or wider years
+    private static Instant fallback(String s) {
+        try {
+            TemporalAccessor t = DateTimeFormatter.ISO_DATE_TIME.parseBest(s,
+                    Instant::from, LocalDateTime::from);
+            return (t instanceof Instant) ? (Instant) t : ((LocalDateTime) t).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            throw invalid(s);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String s) {
+        return new IllegalArgumentException("Invalid ISO-8601 date-time: " + s);
+    }
+}
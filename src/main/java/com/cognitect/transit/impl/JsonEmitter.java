@@ -8,7 +8,6 @@ import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Map;
 import java.util.function.Function;
 import java.util.Base64;
 
@@ -52,7 +51,9 @@ public class JsonEmitter extends AbstractEmitter {
 
     @Override
     public void emitString(String prefix, String tag, String s, boolean asMapKey, WriteCache cache) throws Exception {
-        String outString = cache.cacheWrite(Util.maybePrefix(prefix, tag, s), asMapKey);
+        String outString = cache.cacheWrite(prefix, tag, s, asMapKey);
+        if(outString == null)
+            outString = Util.maybePrefix(prefix, tag, s);
         gen.writeString(outString);
     }
 
@@ -159,17 +160,21 @@ public class JsonEmitter extends AbstractEmitter {
     }
 
     @Override
-    protected void emitMap(Iterable<Map.Entry<Object, Object>> i, boolean ignored, WriteCache cache) throws Exception {
+    protected void emitMapBegin(Long size, WriteCache cache) throws Exception {
 
-        long sz = Util.mapSize(i);
-
-        emitArrayStart(sz);
+        emitArrayStart(size);
         emitString(null, null, Constants.MAP_AS_ARRAY, false, cache);
+    }
+
+    @Override
+    protected void emitMapFinish() throws Exception {
 
-        for (Map.Entry e : i) {
-            marshal(e.getKey(), true, cache);
-            marshal(e.getValue(), false, cache);
-        }
         emitArrayEnd();
     }
+
+    @Override
+    protected boolean needsSizes() {
+
+        return false;
+    }
 }
@@ -9,6 +9,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import java.io.EOFException;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -40,7 +41,7 @@ public class JsonParser extends AbstractParser {
 
     @Override
     public Object parse(ReadCache cache, Object eofValue) throws IOException {
-        if (jp.nextToken() == null)
+        if (nextValue(cache) == null)
             return eofValue;
         else
             return parseVal(false, cache);
@@ -48,12 +49,23 @@ public class JsonParser extends AbstractParser {
 
     @Override
     public Object parse(ReadCache cache) throws IOException {
-        if(jp.nextToken() == null)
+        if(nextValue(cache) == null)
             throw new EOFException();
         else
             return parseVal(false, cache);
     }
 
+    // advances to the next top-level value, past any cache markers
+    private JsonToken nextValue(ReadCache cache) throws IOException {
+        JsonToken t = jp.nextToken();
+        while (t == JsonToken.VALUE_STRING &&
+                ReadCache.isMarker(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength())) {
+            cache.marker(jp.getTextCharacters()[jp.getTextOffset() + 1]);
+            t = jp.nextToken();
+        }
+        return t;
+    }
+
     @Override
     public Object parseVal(boolean asMapKey, ReadCache cache) throws IOException {
 
@@ -63,9 +75,10 @@ public class JsonParser extends AbstractParser {
             case START_ARRAY:
                 return parseArray(asMapKey, cache, null);
             case FIELD_NAME:
-                return cache.cacheRead(jp.getText(), asMapKey, this);
+                // names are already canonical strings in jackson
+                return cache.cacheRead(jp.getCurrentName(), asMapKey, this);
             case VALUE_STRING:
-                return cache.cacheRead(jp.getText(), asMapKey, this);
+                return cache.cacheRead(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength(), asMapKey, this);
             case VALUE_NUMBER_INT:
                 return parseLong();
             case VALUE_NUMBER_FLOAT:
@@ -92,32 +105,18 @@ public class JsonParser extends AbstractParser {
         Object mb = mr.init();
 
         while(jp.nextToken() != endToken) {
-            Object key = parseVal(true, cache);
+            Object key = (projection != null && isStringToken()) ? projectKey(jp.getText(), cache) : parseVal(true, cache);
             if (key instanceof Tag) {
-                String tag = ((Tag) key).getValue();
-                ReadHandler<Object, Object> val_handler = getHandler(tag);
-                Object val;
                 jp.nextToken(); // advance to read value
-                if (val_handler != null) {
-                    if (this.jp.getCurrentToken() == JsonToken.START_OBJECT && val_handler instanceof MapReadHandler) {
-                        // use map reader to decode value
-                        val = parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
-                    } else if (this.jp.getCurrentToken() == JsonToken.START_ARRAY && val_handler instanceof ArrayReadHandler) {
-                        // use array reader to decode value
-                        val = parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
-                    } else {
-                        // read value and decode normally
-                        val = val_handler.fromRep(parseVal(false, cache));
-                    }
-                } else {
-                    // default decode
-                    val = this.decode(tag, parseVal(false, cache));
-                }
+                Object val = parseTagged(((Tag) key).getValue(), cache);
                 jp.nextToken(); // advance to read end of object or array
                 return val;
             } else {
                 jp.nextToken(); // advance to read value
-                mb = mr.add(mb, key, parseVal(false, cache));
+                if (projection == null)
+                    mb = mr.add(mb, key, parseVal(false, cache));
+                else
+                    mb = addProjected(mr, mb, key, cache);
             }
         }
 
@@ -127,6 +126,10 @@ public class JsonParser extends AbstractParser {
     @Override
     public Object parseArray(boolean ignored, ReadCache cache, ArrayReadHandler<Object, ?, Object, ?> handler) throws IOException {
 
+        ArrayReader<Object, ?, Object> ar = (handler != null) ? handler.arrayReader() : listBuilder;
+        if (handler != null && ar instanceof PrimitiveArrayReader)
+            return parsePrimitiveArray((PrimitiveArrayReader<Object, ?>) ar, cache);
+
         // if nextToken == JsonToken.END_ARRAY
         if (jp.nextToken() != JsonToken.END_ARRAY) {
             Object firstVal = parseVal(false, cache);
@@ -135,32 +138,14 @@ public class JsonParser extends AbstractParser {
                     // if the same, build a map w/ rest of array contents
                     return parseMap(false, cache, null, JsonToken.END_ARRAY);
                 } else if (firstVal instanceof Tag) {
-                    String tag = ((Tag) firstVal).getValue();
-                    ReadHandler<Object, Object> val_handler = getHandler(tag);
                     jp.nextToken(); // advance to value
-                    Object val;
-                    if (val_handler != null) {
-                        if (this.jp.getCurrentToken() == JsonToken.START_OBJECT && val_handler instanceof MapReadHandler) {
-                            // use map reader to decode value
-                            val = parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
-                        } else if (this.jp.getCurrentToken() == JsonToken.START_ARRAY && val_handler instanceof ArrayReadHandler) {
-                            // use array reader to decode value
-                            val = parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
-                        } else {
-                            // read value and decode normally
-                            val = val_handler.fromRep(parseVal(false, cache));
-                        }
-                    } else {
-                        // default decode
-                        val = this.decode(tag, parseVal(false, cache));
-                    }
+                    Object val = parseTagged(((Tag) firstVal).getValue(), cache);
                     jp.nextToken(); // advance past end of object or array
                     return val;
                 }
             }
 
             // process array w/o special decoding or interpretation
-            ArrayReader<Object, ?, Object> ar = (handler != null) ? handler.arrayReader() : listBuilder;
             Object ab = ar.init();
             ab = ar.add(ab, firstVal);
             while (jp.nextToken() != JsonToken.END_ARRAY) {
@@ -170,7 +155,290 @@ public class JsonParser extends AbstractParser {
         }
 
         // make an empty collection, honoring handler's arrayReader, if present
-        ArrayReader<Object, ?, Object> ar = (handler != null) ? handler.arrayReader() : listBuilder;
         return ar.complete(ar.init(0));
     }
+
+    /**
+     * Reads numbers straight into ar, without boxing them
+     */
+    private Object parsePrimitiveArray(PrimitiveArrayReader<Object, ?> ar, ReadCache cache) throws IOException {
+        Object ab = ar.init();
+        while (jp.nextToken() != JsonToken.END_ARRAY) {
+            JsonToken t = jp.getCurrentToken();
+            if (t == JsonToken.VALUE_NUMBER_FLOAT)
+                ab = ar.addDouble(ab, jp.getDoubleValue());
+            else if (t == JsonToken.VALUE_NUMBER_INT && jp.getNumberType() != com.fasterxml.jackson.core.JsonParser.NumberType.BIG_INTEGER)
+                ab = ar.addLong(ab, jp.getLongValue());
+            else
+                ab = ar.add(ab, parseVal(false, cache));
+        }
+        return ar.complete(ab);
+    }
+
+    /**
+     * Decodes the tagged value whose representation starts at the current token
+     */
+    private Object parseTagged(String tag, ReadCache cache) throws IOException {
+        Projection p = projection;
+        if (p != null && !isCollectionTag(tag)) {
+            // tagged values are decoded whole
+            projection = null;
+            try {
+                return parseTagged(tag, cache);
+            } finally {
+                projection = p;
+            }
+        }
+        ReadHandler<Object, Object> val_handler = getHandler(tag);
+        if (val_handler != null) {
+            if (this.jp.getCurrentToken() == JsonToken.START_OBJECT && val_handler instanceof MapReadHandler) {
+                // use map reader to decode value
+                return parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
+            } else if (this.jp.getCurrentToken() == JsonToken.START_ARRAY && val_handler instanceof ArrayReadHandler) {
+                // use array reader to decode value
+                return parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
+            } else {
+                // read value and decode normally
+                return val_handler.fromRep(parseVal(false, cache));
+            }
+        } else {
+            // default decode
+            return this.decode(tag, parseVal(false, cache));
+        }
+    }
+
+    @Override
+    public boolean parseEvents(ReadCache cache, ReadEventHandler handler) throws IOException {
+        if (nextValue(cache) == null)
+            return false;
+        walkVal(cache, handler);
+        return true;
+    }
+
+    private void walkVal(ReadCache cache, ReadEventHandler handler) throws IOException {
+        switch (jp.getCurrentToken()) {
+            case START_OBJECT:
+                walkMap(cache, handler, JsonToken.END_OBJECT);
+                break;
+            case START_ARRAY:
+                walkArray(cache, handler);
+                break;
+            default:
+                handler.value(parseVal(false, cache));
+        }
+    }
+
+    private void walkMap(ReadCache cache, ReadEventHandler handler, JsonToken endToken) throws IOException {
+        boolean started = false;
+        while (jp.nextToken() != endToken) {
+            Object key = parseVal(true, cache);
+            if (!started && key instanceof Tag) {
+                jp.nextToken(); // advance to read value
+                walkTagged(((Tag) key).getValue(), cache, handler);
+                jp.nextToken(); // advance to read end of object or array
+                return;
+            }
+            if (!started) {
+                handler.startMap();
+                started = true;
+            }
+            handler.key(key);
+            jp.nextToken(); // advance to read value
+            walkVal(cache, handler);
+        }
+        if (!started)
+            handler.startMap();
+        handler.endMap();
+    }
+
+    private void walkArray(ReadCache cache, ReadEventHandler handler) throws IOException {
+        if (jp.nextToken() == JsonToken.VALUE_STRING) {
+            Object firstVal = parseVal(false, cache);
+            if (firstVal == Constants.MAP_AS_ARRAY) {
+                walkMap(cache, handler, JsonToken.END_ARRAY);
+                return;
+            } else if (firstVal instanceof Tag) {
+                jp.nextToken(); // advance to value
+                walkTagged(((Tag) firstVal).getValue(), cache, handler);
+                jp.nextToken(); // advance past end of object or array
+                return;
+            }
+            handler.startArray();
+            handler.value(firstVal);
+        } else {
+            handler.startArray();
+            if (jp.getCurrentToken() == JsonToken.END_ARRAY) {
+                handler.endArray();
+                return;
+            }
+            walkVal(cache, handler);
+        }
+        while (jp.nextToken() != JsonToken.END_ARRAY)
+            walkVal(cache, handler);
+        handler.endArray();
+    }
+
+    private void walkTagged(String tag, ReadCache cache, ReadEventHandler handler) throws IOException {
+        if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+            handler.value(parseTagged(tag, cache));
+        } else if (tag.equals("cmap")) {
+            handler.startMap();
+            while (jp.nextToken() != JsonToken.END_ARRAY) {
+                handler.key(parseVal(false, cache));
+                jp.nextToken(); // advance to read value
+                walkVal(cache, handler);
+            }
+            handler.endMap();
+        } else if (isCollectionTag(tag)) {
+            handler.startTagged(tag);
+            walkArray(cache, handler);
+            handler.endTagged();
+        } else {
+            handler.value(parseTagged(tag, cache));
+        }
+    }
+
+    @Override
+    public void skipVal(boolean asMapKey, ReadCache cache) throws IOException {
+        switch (jp.getCurrentToken()) {
+            case START_OBJECT:
+                while (jp.nextToken() != JsonToken.END_OBJECT) {
+                    skipString(true, cache);
+                    jp.nextToken(); // advance to value
+                    skipVal(false, cache);
+                }
+                break;
+            case START_ARRAY:
+                boolean mapAsArray = false;
+                for (int i = 0; jp.nextToken() != JsonToken.END_ARRAY; i++) {
+                    if (i == 0 && isMapAsArray())
+                        mapAsArray = true;
+                    else
+                        skipVal(mapAsArray && (i & 1) == 1, cache);
+                }
+                break;
+            case FIELD_NAME:
+            case VALUE_STRING:
+                skipString(asMapKey, cache);
+                break;
+            default:
+                // nothing cacheable in other scalars
+        }
+    }
+
+    private boolean isStringToken() {
+        JsonToken t = jp.getCurrentToken();
+        return t == JsonToken.FIELD_NAME || t == JsonToken.VALUE_STRING;
+    }
+
+    private boolean isMapAsArray() throws IOException {
+        if (jp.getCurrentToken() != JsonToken.VALUE_STRING || jp.getTextLength() != 2)
+            return false;
+        char[] chars = jp.getTextCharacters();
+        int offset = jp.getTextOffset();
+        return chars[offset] == Constants.SUB && chars[offset + 1] == ' ';
+    }
+
+    // only builds the string if it would be cached
+    private void skipString(boolean asMapKey, ReadCache cache) throws IOException {
+        if (jp.getTextLength() < WriteCache.MIN_SIZE_CACHEABLE) {
+            // a cache code still counts as a use of its entry
+            if (cache.isClock() && jp.getTextLength() > 1 && jp.getTextCharacters()[jp.getTextOffset()] == Constants.SUB)
+                cache.cacheRaw(jp.getText(), asMapKey);
+            return;
+        }
+        if (!asMapKey) {
+            char[] chars = jp.getTextCharacters();
+            int offset = jp.getTextOffset();
+            if (!isCacheablePrefix(chars[offset], chars[offset + 1]))
+                return;
+        }
+        cache.cacheRaw(jp.getText(), asMapKey);
+    }
+
+    @Override
+    public boolean skip(ReadCache cache) throws IOException {
+        if (nextValue(cache) == null)
+            return false;
+        if (cache.isSession())
+            skipVal(false, cache);
+        else
+            jp.skipChildren();
+        return true;
+    }
+
+    @Override
+    public Iterator<Object> parseElements(final ReadCache cache) throws IOException {
+        JsonToken t = nextValue(cache);
+        if (t == null)
+            throw new EOFException();
+        if (t != JsonToken.START_ARRAY && t != JsonToken.START_OBJECT)
+            throw notAnArray(jp.getText());
+
+        boolean nested = false;
+        boolean hasFirst = false;
+        Object first = null;
+        jp.nextToken();
+        if (jp.getCurrentToken() == JsonToken.VALUE_STRING || jp.getCurrentToken() == JsonToken.FIELD_NAME) {
+            first = parseVal(t == JsonToken.START_OBJECT, cache);
+            if (first instanceof Tag) {
+                String tag = ((Tag) first).getValue();
+                if (!isCollectionTag(tag) || jp.nextToken() != JsonToken.START_ARRAY)
+                    throw notAnArray("a " + tag);
+                // iterate over the representation instead
+                nested = true;
+                jp.nextToken();
+            } else if (t == JsonToken.START_OBJECT || first == Constants.MAP_AS_ARRAY) {
+                throw notAnArray("a map");
+            } else {
+                hasFirst = true;
+            }
+        } else if (t == JsonToken.START_OBJECT) {
+            throw notAnArray("a map");
+        }
+
+        final boolean inTag = nested;
+        final boolean firstParsed = hasFirst;
+        final Object firstVal = first;
+        return new Elements() {
+            private boolean pending = firstParsed;
+            private boolean advance = false;
+
+            @Override
+            protected boolean hasMore() throws IOException {
+                if (pending)
+                    return true;
+                if (advance) {
+                    jp.nextToken();
+                    advance = false;
+                }
+                if (jp.getCurrentToken() != JsonToken.END_ARRAY)
+                    return true;
+                if (inTag)
+                    jp.nextToken(); // advance to the end of the tagged value
+                return false;
+            }
+
+            @Override
+            protected Object parseNext() throws IOException {
+                advance = true;
+                if (pending) {
+                    pending = false;
+                    return firstVal;
+                }
+                return parseVal(false, cache);
+            }
+
+            @Override
+            protected void skipNext(boolean keepCache) throws IOException {
+                advance = true;
+                if (pending)
+                    pending = false;
+                else if (keepCache)
+                    skipVal(false, cache);
+                else
+                    jp.skipChildren();
+            }
+        };
+    }
 }
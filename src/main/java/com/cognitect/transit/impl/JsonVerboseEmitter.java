@@ -6,7 +6,6 @@ package com.cognitect.transit.impl;
 import com.cognitect.transit.WriteHandler;
 import com.fasterxml.jackson.core.JsonGenerator;
 
-import java.util.Map;
 import java.util.function.Function;
 
 public class JsonVerboseEmitter extends JsonEmitter {
@@ -26,7 +25,9 @@ public class JsonVerboseEmitter extends JsonEmitter {
 
     @Override
     public void emitString(String prefix, String tag, String s, boolean asMapKey, WriteCache cache) throws Exception {
-        String outString = cache.cacheWrite(Util.maybePrefix(prefix, tag, s), asMapKey);
+        String outString = cache.cacheWrite(prefix, tag, s, asMapKey);
+        if(outString == null)
+            outString = Util.maybePrefix(prefix, tag, s);
         if(asMapKey)
             gen.writeFieldName(outString);
         else
@@ -34,23 +35,25 @@ public class JsonVerboseEmitter extends JsonEmitter {
     }
 
     @Override
-    protected void emitTagged(String t, Object o, boolean ignored, WriteCache cache) throws Exception {
+    protected void emitTagStart(String t, WriteCache cache) throws Exception {
         emitMapStart(1L);
         emitString(Constants.ESC_TAG, t, "", true, cache);
-        marshal(o, false, cache);
+    }
+
+    @Override
+    protected void emitTagEnd() throws Exception {
         emitMapEnd();
     }
 
     @Override
-    protected void emitMap(Iterable<Map.Entry<Object, Object>> i, boolean ignored, WriteCache cache) throws Exception {
+    protected void emitMapBegin(Long size, WriteCache cache) throws Exception {
 
-        long sz = Util.mapSize(i);
+        emitMapStart(size);
+    }
+
+    @Override
+    protected void emitMapFinish() throws Exception {
 
-        emitMapStart(sz);
-        for (Map.Entry e : i) {
-            marshal(e.getKey(), true, cache);
-            marshal(e.getValue(), false, cache);
-        }
         emitMapEnd();
     }
 }
@@ -7,30 +7,36 @@ import com.cognitect.transit.Keyword;
 
 public class KeywordImpl implements Comparable<Keyword>, Keyword {
 
+    private static final Interner<KeywordImpl> interner = new Interner<KeywordImpl>(KeywordImpl::new);
+
     final String ns;
     final String name;
-    transient String _str;
-    transient int _hash;
+    final String _str;
+    final int _hash;
 
     public KeywordImpl(String nsname) {
         int i = nsname.indexOf('/');
         if(i == -1) {
             ns = null;
-            name = nsname.intern();
+            name = nsname;
         } else {
-            ns = nsname.substring(0, i).intern();
-            name = nsname.substring(i + 1).intern();
+            ns = nsname.substring(0, i);
+            name = nsname.substring(i + 1);
         }
+        _str = ":" + nsname;
+        _hash = 17 * _str.hashCode();
+    }
+
+    /**
+     * @return the canonical keyword for nsname, so that keywords read or
+     * made many times are shared and compare by identity
+     */
+    public static KeywordImpl intern(String nsname) {
+        return interner.intern(nsname);
     }
 
     @Override
     public String toString() {
-        if(_str == null){
-            if(ns != null)
-                _str = ":" + ns + "/" + name;
-            else
-                _str = ":" + name;
-        }
         return _str;
     }
 
@@ -50,17 +56,15 @@ public class KeywordImpl implements Comparable<Keyword>, Keyword {
         if(o == this)
             return true;
 
-        //N.B. relies on interned strings
-        return o instanceof Keyword &&
-           ((Keyword)o).getNamespace() == ns &&
-           ((Keyword)o).getName() == name;
-
+        if(!(o instanceof Keyword))
+            return false;
+        Keyword k = (Keyword) o;
+        return name.equals(k.getName()) &&
+           (ns == null ? k.getNamespace() == null : ns.equals(k.getNamespace()));
     }
 
     @Override
     public int hashCode() {
-        if(_hash == 0)
-            _hash = 17 * toString().hashCode();
         return _hash;
     }
 
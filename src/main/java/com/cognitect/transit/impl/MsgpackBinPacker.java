@@ -0,0 +1,132 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import org.msgpack.MessagePack;
+import org.msgpack.io.Output;
+import org.msgpack.io.StreamOutput;
+import org.msgpack.packer.MessagePackPacker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Packer that can write byte arrays as native msgpack bin values. The
+ * msgpack 0.6 packer only knows the raw (str) family, so binary values are
+ * written through the regular raw path and their header is rewritten to
+ * the matching bin header on the way out.
+ */
+public class MsgpackBinPacker extends MessagePackPacker {
+
+    private final BinOutput binOut;
+
+    public MsgpackBinPacker(MessagePack msgpack, OutputStream out) {
+        this(msgpack, new BinOutput(new StreamOutput(out)));
+    }
+
+    private MsgpackBinPacker(MessagePack msgpack, BinOutput out) {
+        super(msgpack, out);
+        this.binOut = out;
+    }
+
+    public void writeBinary(byte[] b) throws IOException {
+        binOut.binNext = true;
+        try {
+            write(b);
+        } finally {
+            binOut.binNext = false;
+        }
+    }
+
+    private static class BinOutput implements Output {
+
+        private static final byte BIN8 = (byte) 0xc4;
+        private static final byte BIN16 = (byte) 0xc5;
+        private static final byte BIN32 = (byte) 0xc6;
+
+        private final Output out;
+        boolean binNext;
+
+        BinOutput(Output out) {
+            this.out = out;
+        }
+
+        @Override
+        public void writeByte(byte v) throws IOException {
+            if (binNext) {
+                // fixraw, length in the low five bits
+                binNext = false;
+                out.writeByteAndByte(BIN8, (byte) (v & 0x1f));
+            } else {
+                out.writeByte(v);
+            }
+        }
+
+        @Override
+        public void writeByteAndShort(byte b, short v) throws IOException {
+            if (binNext) {
+                // raw16
+                binNext = false;
+                int len = v & 0xffff;
+                if (len < 256)
+                    out.writeByteAndByte(BIN8, (byte) len);
+                else
+                    out.writeByteAndShort(BIN16, v);
+            } else {
+                out.writeByteAndShort(b, v);
+            }
+        }
+
+        @Override
+        public void writeByteAndInt(byte b, int v) throws IOException {
+            if (binNext) {
+                // raw32
+                binNext = false;
+                out.writeByteAndInt(BIN32, v);
+            } else {
+                out.writeByteAndInt(b, v);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+
+        @Override
+        public void write(ByteBuffer bb) throws IOException { out.write(bb); }
+
+        @Override
+        public void writeShort(short v) throws IOException { out.writeShort(v); }
+
+        @Override
+        public void writeInt(int v) throws IOException { out.writeInt(v); }
+
+        @Override
+        public void writeLong(long v) throws IOException { out.writeLong(v); }
+
+        @Override
+        public void writeFloat(float v) throws IOException { out.writeFloat(v); }
+
+        @Override
+        public void writeDouble(double v) throws IOException { out.writeDouble(v); }
+
+        @Override
+        public void writeByteAndByte(byte b, byte v) throws IOException { out.writeByteAndByte(b, v); }
+
+        @Override
+        public void writeByteAndLong(byte b, long v) throws IOException { out.writeByteAndLong(b, v); }
+
+        @Override
+        public void writeByteAndFloat(byte b, float v) throws IOException { out.writeByteAndFloat(b, v); }
+
+        @Override
+        public void writeByteAndDouble(byte b, double v) throws IOException { out.writeByteAndDouble(b, v); }
+
+        @Override
+        public void flush() throws IOException { out.flush(); }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import org.msgpack.MessagePack;
+import org.msgpack.io.BufferReferer;
+import org.msgpack.io.Input;
+import org.msgpack.io.LinkedBufferInput;
+import org.msgpack.io.StreamInput;
+import org.msgpack.type.ValueType;
+import org.msgpack.unpacker.MessagePackUnpacker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Unpacker that can tell native msgpack bin values from strings. The
+ * msgpack 0.6 unpacker reports both as RAW, so the head byte of the next
+ * value is remembered as it is read and checked against the bin headers.
+ */
+public class MsgpackBinUnpacker extends MessagePackUnpacker {
+
+    private static final int BUFFER_SIZE = 512;
+
+    private final HeadInput headIn;
+
+    public MsgpackBinUnpacker(MessagePack msgpack, InputStream in) {
+        this(msgpack, new HeadInput(new StreamInput(in)));
+    }
+
+    public MsgpackBinUnpacker(MessagePack msgpack, byte[] bytes, int offset, int length) {
+        this(msgpack, new HeadInput(feed(new LinkedBufferInput(BUFFER_SIZE), bytes, offset, length)));
+    }
+
+    public MsgpackBinUnpacker(MessagePack msgpack, ByteBuffer buffer) {
+        this(msgpack, new HeadInput(feed(new LinkedBufferInput(BUFFER_SIZE), buffer)));
+    }
+
+    private MsgpackBinUnpacker(MessagePack msgpack, HeadInput in) {
+        super(msgpack, in);
+        this.headIn = in;
+    }
+
+    private static Input feed(LinkedBufferInput in, byte[] bytes, int offset, int length) {
+        in.feed(bytes, offset, length, true);
+        return in;
+    }
+
+    private static Input feed(LinkedBufferInput in, ByteBuffer buffer) {
+        in.feed(buffer, true);
+        return in;
+    }
+
+    /**
+     * @return true if the next value is a msgpack bin value
+     */
+    public boolean nextIsBinary() throws IOException {
+        if (getNextType() != ValueType.RAW)
+            return false;
+        // getNextType has just read, or still holds, the head byte
+        int head = headIn.lastByte & 0xff;
+        return head >= 0xc4 && head <= 0xc6;
+    }
+
+    private static class HeadInput implements Input {
+
+        private final Input in;
+        byte lastByte;
+
+        HeadInput(Input in) {
+            this.in = in;
+        }
+
+        @Override
+        public byte readByte() throws IOException { return lastByte = in.readByte(); }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException { return in.read(b, off, len); }
+
+        @Override
+        public boolean tryRefer(BufferReferer ref, int len) throws IOException { return in.tryRefer(ref, len); }
+
+        @Override
+        public void advance() { in.advance(); }
+
+        @Override
+        public byte getByte() throws IOException { return in.getByte(); }
+
+        @Override
+        public short getShort() throws IOException { return in.getShort(); }
+
+        @Override
+        public int getInt() throws IOException { return in.getInt(); }
+
+        @Override
+        public long getLong() throws IOException { return in.getLong(); }
+
+        @Override
+        public float getFloat() throws IOException { return in.getFloat(); }
+
+        @Override
+        public double getDouble() throws IOException { return in.getDouble(); }
+
+        @Override
+        public int getReadByteCount() { return in.getReadByteCount(); }
+
+        @Override
+        public void resetReadByteCount() { in.resetReadByteCount(); }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+}
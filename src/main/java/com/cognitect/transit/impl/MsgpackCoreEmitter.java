@@ -0,0 +1,174 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.WriteHandler;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Emitter for the msgpack-core engine
+ */
+public class MsgpackCoreEmitter extends AbstractEmitter {
+
+    private final MessagePacker gen;
+    private final boolean nativeBinary;
+
+    public MsgpackCoreEmitter(MessagePacker gen, WriteHandlerMap writeHandlerMap, WriteHandler defaultWriteHandler, Function<Object,Object> transform, boolean nativeBinary) {
+        super(writeHandlerMap, defaultWriteHandler, transform);
+        this.gen = gen;
+        this.nativeBinary = nativeBinary;
+    }
+
+    @Override
+    public void emit(Object o, boolean asMapKey, WriteCache cache) throws Exception {
+        marshalTop(o, cache);
+    }
+
+    @Override
+    public void emitNil(boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packNil();
+    }
+
+    @Override
+    public void emitString(String prefix, String tag, String s, boolean asMapKey, WriteCache cache) throws Exception {
+        String outString = cache.cacheWrite(prefix, tag, s, asMapKey);
+        if(outString == null)
+            outString = Util.maybePrefix(prefix, tag, s);
+        this.gen.packString(outString);
+    }
+
+    @Override
+    public void emitBoolean(Boolean b, boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packBoolean(b);
+    }
+
+    @Override
+    public void emitBoolean(boolean b, boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packBoolean(b);
+    }
+
+    @Override
+    public void emitInteger(Object o, boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packLong(Util.numberToPrimitiveLong(o));
+    }
+
+    @Override
+    public void emitInteger(long i, boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packLong(i);
+    }
+
+    @Override
+    public void emitDouble(Object d, boolean asMapKey, WriteCache cache) throws Exception {
+        if (d instanceof Double)
+            this.gen.packDouble((Double) d);
+        else if (d instanceof Float)
+            this.gen.packFloat((Float) d);
+        else
+            throw new Exception("Unknown floating point type: " + d.getClass());
+    }
+
+    @Override
+    public void emitDouble(float d, boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packFloat(d);
+    }
+
+    @Override
+    public void emitDouble(double d, boolean asMapKey, WriteCache cache) throws Exception {
+        this.gen.packDouble(d);
+    }
+
+    @Override
+    public void emitBinary(Object b, boolean asMapKey, WriteCache cache) throws Exception {
+        byte[] bytes = (byte[]) b;
+        if (nativeBinary && !asMapKey) {
+            this.gen.packBinaryHeader(bytes.length);
+            this.gen.writePayload(bytes);
+        } else {
+            emitString(Constants.ESC_STR, "b", Base64.getEncoder().encodeToString(bytes), asMapKey, cache);
+        }
+    }
+
+    @Override
+    public void emitArrayStart(Long size) throws Exception {
+        this.gen.packArrayHeader(size.intValue());
+    }
+
+    @Override
+    public void emitArrayEnd() throws Exception {
+    }
+
+    @Override
+    public void emitMapStart(Long size) throws Exception {
+        this.gen.packMapHeader(size.intValue());
+    }
+
+    @Override
+    public void emitMapEnd() throws Exception {
+    }
+
+    @Override
+    public void flushWriter() throws IOException {
+        this.gen.flush();
+    }
+
+    @Override
+    public boolean prefersStrings() {
+        return false;
+    }
+
+    /**
+     * Packer output that hands packed bytes to a stream but never flushes
+     * it, so that flushing the packer only moves its buffer into the
+     * writer's OutputBuffer and the flush policy stays in charge.
+     */
+    public static class StreamOutput implements MessageBufferOutput {
+
+        private static final int BUFFER_SIZE = 8192;
+
+        private final OutputStream out;
+        private MessageBuffer buffer;
+
+        public StreamOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public MessageBuffer next(int minimumSize) {
+            if (buffer == null || buffer.size() < minimumSize)
+                buffer = MessageBuffer.allocate(Math.max(BUFFER_SIZE, minimumSize));
+            return buffer;
+        }
+
+        @Override
+        public void writeBuffer(int length) throws IOException {
+            out.write(buffer.array(), buffer.arrayOffset(), length);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void add(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.*;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.value.ValueType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for the msgpack-core engine. Scalars are read straight off the
+ * unpacker, without an intermediate Value per token.
+ */
+public class MsgpackCoreParser extends AbstractParser {
+    private final MessageUnpacker mp;
+
+    public MsgpackCoreParser(MessageUnpacker mp,
+                             Map<String, ReadHandler<?,?>> handlers,
+                             DefaultReadHandler defaultHandler,
+                             MapReader<?, Map<Object, Object>, Object, Object> mapBuilder,
+                             ArrayReader<?, List<Object>, Object> listBuilder) {
+        super(handlers, defaultHandler, mapBuilder, listBuilder);
+        this.mp = mp;
+    }
+
+    private Object parseLong(MessageFormat f) throws IOException {
+        if (f == MessageFormat.UINT64) {
+            BigInteger bi = mp.unpackBigInteger();
+            return bi.bitLength() < 64 ? (Object) bi.longValue() : bi;
+        }
+        return mp.unpackLong();
+    }
+
+    @Override
+    public Object parse(ReadCache cache) throws IOException {
+        Object val = nextValue(cache);
+        if (val != NOT_A_STRING)
+            return val;
+        if (!mp.hasNext())
+            throw new EOFException();
+        return parseVal(false, cache);
+    }
+
+    // reads past any cache markers before the next top-level value;
+    // these are the only strings written at the top level, any other is
+    // a bare value and returned instead of NOT_A_STRING
+    private Object nextValue(ReadCache cache) throws IOException {
+        while (mp.hasNext() && nextType() == ValueType.STRING) {
+            Object val = parseVal(false, cache);
+            if (val != ReadCache.MARKER)
+                return val;
+        }
+        return NOT_A_STRING;
+    }
+
+    @Override
+    public Object parseVal(boolean asMapKey, ReadCache cache) throws IOException {
+        MessageFormat f = mp.getNextFormat();
+        switch (f.getValueType()) {
+            case MAP:
+                return parseMap(asMapKey, cache, null);
+            case ARRAY:
+                return parseArray(asMapKey, cache, null);
+            case STRING:
+                return cache.cacheRead(mp.unpackString(), asMapKey, this);
+            case BINARY:
+                return mp.readPayload(mp.unpackBinaryHeader());
+            case INTEGER:
+                return parseLong(f);
+            case FLOAT:
+                return mp.unpackDouble();
+            case BOOLEAN:
+                return mp.unpackBoolean();
+            case NIL:
+                mp.unpackNil();
+                return null;
+            default:
+                mp.skipValue();
+                return null;
+        }
+    }
+
+    private ValueType nextType() throws IOException {
+        return mp.getNextFormat().getValueType();
+    }
+
+    @Override
+    public Object parseMap(boolean ignored, ReadCache cache, MapReadHandler<Object, ?, Object, Object, ?> handler) throws IOException {
+
+        int sz = this.mp.unpackMapHeader();
+
+        MapReader<Object, ?, Object, Object> mr = (handler != null) ? handler.mapReader() : mapBuilder;
+
+        Object mb = mr.init(sz);
+
+        for (int remainder = sz; remainder > 0; remainder--) {
+            Object key = (projection != null && nextType() == ValueType.STRING) ? projectKey(mp.unpackString(), cache) : parseVal(true, cache);
+            if (key instanceof Tag) {
+                return parseTagged(((Tag) key).getValue(), cache);
+            } else {
+                if (projection == null)
+                    mb = mr.add(mb, key, parseVal(false, cache));
+                else
+                    mb = addProjected(mr, mb, key, cache);
+            }
+        }
+
+        return mr.complete(mb);
+    }
+
+    @Override
+    public Object parseArray(boolean ignored, ReadCache cache, ArrayReadHandler<Object, ?, Object, ?> handler) throws IOException {
+
+        int sz = this.mp.unpackArrayHeader();
+
+        ArrayReader<Object, ?, Object> ar = (handler != null) ? handler.arrayReader() : listBuilder;
+        if (handler != null && ar instanceof PrimitiveArrayReader)
+            return parsePrimitiveArray((PrimitiveArrayReader<Object, ?>) ar, sz, cache);
+
+        Object ab = ar.init(sz);
+
+        for (int remainder = sz; remainder > 0; remainder--) {
+            Object val = parseVal(false, cache);
+            if ((val != null) && (val instanceof Tag)) {
+                // it's a tagged value
+                return parseTagged(((Tag) val).getValue(), cache);
+            } else {
+                // fall through to regular parse
+                ab = ar.add(ab, val);
+            }
+        }
+
+        return ar.complete(ab);
+    }
+
+    /**
+     * Reads numbers straight into ar, without boxing them
+     */
+    private Object parsePrimitiveArray(PrimitiveArrayReader<Object, ?> ar, int sz, ReadCache cache) throws IOException {
+        Object ab = ar.init(sz);
+        for (int remainder = sz; remainder > 0; remainder--) {
+            MessageFormat f = mp.getNextFormat();
+            if (f.getValueType() == ValueType.FLOAT)
+                ab = ar.addDouble(ab, mp.unpackDouble());
+            else if (f.getValueType() == ValueType.INTEGER && f != MessageFormat.UINT64)
+                ab = ar.addLong(ab, mp.unpackLong());
+            else
+                ab = ar.add(ab, parseVal(false, cache));
+        }
+        return ar.complete(ab);
+    }
+
+    /**
+     * Decodes the tagged value whose representation is next
+     */
+    private Object parseTagged(String tag, ReadCache cache) throws IOException {
+        Projection p = projection;
+        if (p != null && !isCollectionTag(tag)) {
+            // tagged values are decoded whole
+            projection = null;
+            try {
+                return parseTagged(tag, cache);
+            } finally {
+                projection = p;
+            }
+        }
+        ReadHandler<Object, Object> val_handler = getHandler(tag);
+        if (val_handler != null) {
+            if (nextType() == ValueType.MAP && val_handler instanceof MapReadHandler) {
+                // use map reader to decode value
+                return parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
+            } else if (nextType() == ValueType.ARRAY && val_handler instanceof ArrayReadHandler) {
+                // use array reader to decode value
+                return parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
+            } else {
+                // read value and decode normally
+                return val_handler.fromRep(parseVal(false, cache));
+            }
+        } else {
+            // default decode
+            return this.decode(tag, parseVal(false, cache));
+        }
+    }
+
+    @Override
+    public boolean parseEvents(ReadCache cache, ReadEventHandler handler) throws IOException {
+        Object val = nextValue(cache);
+        if (val != NOT_A_STRING) {
+            handler.value(val);
+            return true;
+        }
+        if (!mp.hasNext())
+            return false;
+        walkVal(cache, handler);
+        return true;
+    }
+
+    private void walkVal(ReadCache cache, ReadEventHandler handler) throws IOException {
+        switch (nextType()) {
+            case MAP:
+                walkMap(cache, handler);
+                break;
+            case ARRAY:
+                walkArray(cache, handler);
+                break;
+            default:
+                handler.value(parseVal(false, cache));
+        }
+    }
+
+    private void walkMap(ReadCache cache, ReadEventHandler handler) throws IOException {
+        int sz = this.mp.unpackMapHeader();
+        for (int i = 0; i < sz; i++) {
+            Object key = parseVal(true, cache);
+            if (i == 0 && key instanceof Tag) {
+                walkTagged(((Tag) key).getValue(), cache, handler);
+                return;
+            }
+            if (i == 0)
+                handler.startMap();
+            handler.key(key);
+            walkVal(cache, handler);
+        }
+        if (sz == 0)
+            handler.startMap();
+        handler.endMap();
+    }
+
+    private void walkArray(ReadCache cache, ReadEventHandler handler) throws IOException {
+        int sz = this.mp.unpackArrayHeader();
+        int i = 0;
+        if (sz > 0 && nextType() == ValueType.STRING) {
+            Object firstVal = parseVal(false, cache);
+            if (firstVal instanceof Tag) {
+                walkTagged(((Tag) firstVal).getValue(), cache, handler);
+                return;
+            }
+            handler.startArray();
+            handler.value(firstVal);
+            i++;
+        } else {
+            handler.startArray();
+        }
+        for (; i < sz; i++)
+            walkVal(cache, handler);
+        handler.endArray();
+    }
+
+    private void walkTagged(String tag, ReadCache cache, ReadEventHandler handler) throws IOException {
+        if (nextType() != ValueType.ARRAY) {
+            handler.value(parseTagged(tag, cache));
+        } else if (tag.equals("cmap")) {
+            int sz = this.mp.unpackArrayHeader();
+            handler.startMap();
+            for (int i = 0; i < sz; i += 2) {
+                handler.key(parseVal(false, cache));
+                walkVal(cache, handler);
+            }
+            handler.endMap();
+        } else if (isCollectionTag(tag)) {
+            handler.startTagged(tag);
+            walkArray(cache, handler);
+            handler.endTagged();
+        } else {
+            handler.value(parseTagged(tag, cache));
+        }
+    }
+
+    @Override
+    public void skipVal(boolean asMapKey, ReadCache cache) throws IOException {
+        switch (nextType()) {
+            case MAP:
+                for (int remainder = this.mp.unpackMapHeader(); remainder > 0; remainder--) {
+                    skipVal(true, cache);
+                    skipVal(false, cache);
+                }
+                break;
+            case ARRAY:
+                for (int remainder = this.mp.unpackArrayHeader(); remainder > 0; remainder--)
+                    skipVal(false, cache);
+                break;
+            case STRING:
+                skipString(asMapKey, cache);
+                break;
+            default:
+                mp.skipValue();
+        }
+    }
+
+    // only decodes the string if it would be cached
+    private void skipString(boolean asMapKey, ReadCache cache) throws IOException {
+        int len = mp.unpackRawStringHeader();
+        // a string is at least as long in bytes as in chars
+        if (len < WriteCache.MIN_SIZE_CACHEABLE) {
+            MessageBuffer payload = mp.readPayloadAsReference(len);
+            // a cache code still counts as a use of its entry
+            if (cache.isClock() && len > 1 && payload.getByte(0) == Constants.SUB)
+                cache.cacheRaw(new String(payload.toByteArray(), StandardCharsets.UTF_8), asMapKey);
+            return;
+        }
+        MessageBuffer payload = mp.readPayloadAsReference(len);
+        if (asMapKey || isCacheablePrefix(payload.getByte(0), payload.getByte(1)))
+            cache.cacheRaw(new String(payload.toByteArray(), StandardCharsets.UTF_8), asMapKey);
+    }
+
+    @Override
+    public boolean skip(ReadCache cache) throws IOException {
+        if (nextValue(cache) != NOT_A_STRING)
+            return true;
+        if (!mp.hasNext())
+            return false;
+        if (cache.isSession())
+            skipVal(false, cache);
+        else
+            mp.skipValue();
+        return true;
+    }
+
+    @Override
+    public Iterator<Object> parseElements(final ReadCache cache) throws IOException {
+        if (nextValue(cache) != NOT_A_STRING)
+            throw notAnArray("a string");
+        if (!mp.hasNext())
+            throw new EOFException();
+        if (nextType() != ValueType.ARRAY)
+            throw notAnArray("a " + nextType().toString().toLowerCase());
+
+        int sz = this.mp.unpackArrayHeader();
+        boolean hasFirst = false;
+        Object first = null;
+        if (sz > 0 && nextType() == ValueType.STRING) {
+            first = parseVal(false, cache);
+            if (first instanceof Tag) {
+                String tag = ((Tag) first).getValue();
+                if (!isCollectionTag(tag) || nextType() != ValueType.ARRAY)
+                    throw notAnArray("a " + tag);
+                // iterate over the representation instead
+                sz = this.mp.unpackArrayHeader();
+            } else {
+                hasFirst = true;
+                sz--;
+            }
+        }
+
+        final boolean firstParsed = hasFirst;
+        final Object firstVal = first;
+        final int size = sz;
+        return new Elements() {
+            private boolean pending = firstParsed;
+            private int remaining = size;
+
+            @Override
+            protected boolean hasMore() throws IOException {
+                return pending || remaining > 0;
+            }
+
+            @Override
+            protected Object parseNext() throws IOException {
+                if (pending) {
+                    pending = false;
+                    return firstVal;
+                }
+                remaining--;
+                return parseVal(false, cache);
+            }
+
+            @Override
+            protected void skipNext(boolean keepCache) throws IOException {
+                if (pending) {
+                    pending = false;
+                    return;
+                }
+                remaining--;
+                if (keepCache)
+                    skipVal(false, cache);
+                else
+                    mp.skipValue();
+            }
+        };
+    }
+}
@@ -7,28 +7,31 @@ import com.cognitect.transit.WriteHandler;
 import org.msgpack.packer.Packer;
 
 import java.io.IOException;
-import java.util.Map;
 import java.util.function.Function;
 import java.util.Base64;
 
 public class MsgpackEmitter extends AbstractEmitter {
 
     private final Packer gen;
+    private final MsgpackBinPacker binGen;
 
     @Deprecated
     public MsgpackEmitter(Packer gen, WriteHandlerMap writeHandlerMap) {
         super(writeHandlerMap, null);
         this.gen = gen;
+        this.binGen = (gen instanceof MsgpackBinPacker) ? (MsgpackBinPacker) gen : null;
     }
 
     public MsgpackEmitter(Packer gen, WriteHandlerMap writeHandlerMap, WriteHandler defaultWriteHandler) {
         super(writeHandlerMap, defaultWriteHandler);
         this.gen = gen;
+        this.binGen = (gen instanceof MsgpackBinPacker) ? (MsgpackBinPacker) gen : null;
     }
 
     public MsgpackEmitter(Packer gen, WriteHandlerMap writeHandlerMap, WriteHandler defaultWriteHandler, Function<Object,Object> transform) {
         super(writeHandlerMap, defaultWriteHandler, transform);
         this.gen = gen;
+        this.binGen = (gen instanceof MsgpackBinPacker) ? (MsgpackBinPacker) gen : null;
     }
 
     @Override
@@ -43,7 +46,9 @@ public class MsgpackEmitter extends AbstractEmitter {
 
 @Override
     public void emitString(String prefix, String tag, String s, boolean asMapKey, WriteCache cache) throws Exception {
-        String outString = cache.cacheWrite(Util.maybePrefix(prefix, tag, s), asMapKey);
+        String outString = cache.cacheWrite(prefix, tag, s, asMapKey);
+        if(outString == null)
+            outString = Util.maybePrefix(prefix, tag, s);
         this.gen.write(outString);
     }
 
@@ -96,6 +101,10 @@ public class MsgpackEmitter extends AbstractEmitter {
 
     @Override
     public void emitBinary(Object b, boolean asMapKey, WriteCache cache) throws Exception {
+        if (binGen != null && !asMapKey) {
+            binGen.writeBinary((byte[]) b);
+            return;
+        }
         byte[] encodedBytes = Base64.getEncoder().encode((byte[])b);
         emitString(Constants.ESC_STR, "b", new String(encodedBytes), asMapKey, cache);
     }
@@ -129,14 +138,4 @@ public class MsgpackEmitter extends AbstractEmitter {
     public boolean prefersStrings() {
         return false;
     }
-
-    @Override
-    protected void emitMap(Iterable<Map.Entry<Object, Object>> i, boolean ignored, WriteCache cache) throws Exception {
-        emitMapStart(Util.mapSize(i));
-        for (Map.Entry e : i) {
-            marshal(e.getKey(), true, cache);
-            marshal(e.getValue(), false, cache);
-        }
-        emitMapEnd();
-    }
 }
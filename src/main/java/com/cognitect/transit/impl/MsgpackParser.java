@@ -8,14 +8,18 @@ import org.msgpack.type.Value;
 import org.msgpack.type.ValueType;
 import org.msgpack.unpacker.Unpacker;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 
 public class MsgpackParser extends AbstractParser {
     private final Unpacker mp;
+    private final MsgpackBinUnpacker binMp;
 
     public MsgpackParser(Unpacker mp,
                          Map<String, ReadHandler<?,?>> handlers,
@@ -24,6 +28,7 @@ public class MsgpackParser extends AbstractParser {
                          ArrayReader<?, List<Object>, Object> listBuilder) {
         super(handlers, defaultHandler, mapBuilder, listBuilder);
         this.mp = mp;
+        this.binMp = (mp instanceof MsgpackBinUnpacker) ? (MsgpackBinUnpacker) mp : null;
     }
 
     private Object parseLong() throws IOException {
@@ -41,7 +46,25 @@ public class MsgpackParser extends AbstractParser {
 
     @Override
     public Object parse(ReadCache cache) throws IOException {
-        return parseVal(false, cache);
+        Object val = nextValue(cache);
+        return (val != NOT_A_STRING) ? val : parseVal(false, cache);
+    }
+
+    // reads past any cache markers before the next top-level value;
+    // these are the only strings written at the top level, any other is
+    // a bare value and returned instead of NOT_A_STRING
+    private Object nextValue(ReadCache cache) throws IOException {
+        while (true) {
+            try {
+                if (!nextIsString())
+                    return NOT_A_STRING;
+            } catch (EOFException e) {
+                return NOT_A_STRING;
+            }
+            Object val = parseVal(false, cache);
+            if (val != ReadCache.MARKER)
+                return val;
+        }
     }
 
     @Override
@@ -52,6 +75,8 @@ public class MsgpackParser extends AbstractParser {
             case ARRAY:
                 return parseArray(asMapKey, cache, null);
             case RAW:
+                if (binMp != null && binMp.nextIsBinary())
+                    return mp.readByteArray();
                 return cache.cacheRead(mp.readValue().asRawValue().getString(), asMapKey, this);
             case INTEGER:
                 return parseLong();
@@ -66,6 +91,10 @@ public class MsgpackParser extends AbstractParser {
         return null;
     }
 
+    private boolean nextIsString() throws IOException {
+        return mp.getNextType() == ValueType.RAW && (binMp == null || !binMp.nextIsBinary());
+    }
+
     @Override
     public Object parseMap(boolean ignored, ReadCache cache, MapReadHandler<Object, ?, Object, Object, ?> handler) throws IOException {
 
@@ -76,31 +105,16 @@ public class MsgpackParser extends AbstractParser {
         Object mb = mr.init(sz);
 
         for (int remainder = sz; remainder > 0; remainder--) {
-            Object key = parseVal(true, cache);
+            Object key = (projection != null && nextIsString()) ? projectKey(mp.readValue().asRawValue().getString(), cache) : parseVal(true, cache);
             if (key instanceof Tag) {
-                String tag = ((Tag)key).getValue();
-                ReadHandler<Object, Object> val_handler = getHandler(tag);
-                Object val;
-                if (val_handler != null) {
-                    if (this.mp.getNextType() == ValueType.MAP && val_handler instanceof MapReadHandler) {
-                        // use map reader to decode value
-                        val = parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
-                    } else if (this.mp.getNextType() == ValueType.ARRAY && val_handler instanceof ArrayReadHandler) {
-                        // use array reader to decode value
-                        val = parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
-                    } else {
-                        // read value and decode normally
-                        val = val_handler.fromRep(parseVal(false, cache));
-                    }
-                } else {
-                    // default decode
-                    val = this.decode(tag, parseVal(false, cache));
-                }
-
+                Object val = parseTagged(((Tag) key).getValue(), cache);
                 this.mp.readMapEnd(true);
                 return val;
             } else {
-                mb = mr.add(mb, key, parseVal(false, cache));
+                if (projection == null)
+                    mb = mr.add(mb, key, parseVal(false, cache));
+                else
+                    mb = addProjected(mr, mb, key, cache);
             }
         }
 
@@ -114,6 +128,8 @@ public class MsgpackParser extends AbstractParser {
 	    int sz = this.mp.readArrayBegin();
 
         ArrayReader<Object, ?, Object> ar = (handler != null) ? handler.arrayReader() : listBuilder;
+        if (handler != null && ar instanceof PrimitiveArrayReader)
+            return parsePrimitiveArray((PrimitiveArrayReader<Object, ?>) ar, sz, cache);
 
         Object ab = ar.init(sz);
 
@@ -121,23 +137,7 @@ public class MsgpackParser extends AbstractParser {
             Object val = parseVal(false, cache);
             if ((val != null) && (val instanceof Tag)) {
                 // it's a tagged value
-                String tag = ((Tag) val).getValue();
-                ReadHandler<Object, Object> val_handler = getHandler(tag);
-                if (val_handler != null) {
-                    if (this.mp.getNextType() == ValueType.MAP && val_handler instanceof MapReadHandler) {
-                        // use map reader to decode value
-                        val = parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
-                    } else if (this.mp.getNextType() == ValueType.ARRAY && val_handler instanceof ArrayReadHandler) {
-                        // use array reader to decode value
-                        val = parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
-                    } else {
-                        // read value and decode normally
-                        val = val_handler.fromRep(parseVal(false, cache));
-                    }
-                } else {
-                    // default decode
-                    val = this.decode(tag, parseVal(false, cache));
-                }
+                val = parseTagged(((Tag) val).getValue(), cache);
                 this.mp.readArrayEnd();
                 return val;
             } else {
@@ -149,4 +149,266 @@ public class MsgpackParser extends AbstractParser {
         this.mp.readArrayEnd();
         return ar.complete(ab);
     }
+
+    /**
+     * Reads numbers straight into ar, without boxing them
+     */
+    private Object parsePrimitiveArray(PrimitiveArrayReader<Object, ?> ar, int sz, ReadCache cache) throws IOException {
+        Object ab = ar.init(sz);
+        for (int remainder = sz; remainder > 0; remainder--) {
+            ValueType t = this.mp.getNextType();
+            if (t == ValueType.FLOAT)
+                ab = ar.addDouble(ab, mp.readDouble());
+            else if (t == ValueType.INTEGER)
+                ab = ar.addLong(ab, mp.readLong());
+            else
+                ab = ar.add(ab, parseVal(false, cache));
+        }
+        this.mp.readArrayEnd();
+        return ar.complete(ab);
+    }
+
+    /**
+     * Decodes the tagged value whose representation is next
+     */
+    private Object parseTagged(String tag, ReadCache cache) throws IOException {
+        Projection p = projection;
+        if (p != null && !isCollectionTag(tag)) {
+            // tagged values are decoded whole
+            projection = null;
+            try {
+                return parseTagged(tag, cache);
+            } finally {
+                projection = p;
+            }
+        }
+        ReadHandler<Object, Object> val_handler = getHandler(tag);
+        if (val_handler != null) {
+            if (this.mp.getNextType() == ValueType.MAP && val_handler instanceof MapReadHandler) {
+                // use map reader to decode value
+                return parseMap(false, cache, (MapReadHandler<Object, ?, Object, Object, ?>) val_handler);
+            } else if (this.mp.getNextType() == ValueType.ARRAY && val_handler instanceof ArrayReadHandler) {
+                // use array reader to decode value
+                return parseArray(false, cache, (ArrayReadHandler<Object, ?, Object, ?>) val_handler);
+            } else {
+                // read value and decode normally
+                return val_handler.fromRep(parseVal(false, cache));
+            }
+        } else {
+            // default decode
+            return this.decode(tag, parseVal(false, cache));
+        }
+    }
+
+    @Override
+    public boolean parseEvents(ReadCache cache, ReadEventHandler handler) throws IOException {
+        Object val = nextValue(cache);
+        if (val != NOT_A_STRING) {
+            handler.value(val);
+            return true;
+        }
+        try {
+            mp.getNextType();
+        } catch (EOFException e) {
+            return false;
+        }
+        walkVal(cache, handler);
+        return true;
+    }
+
+    private void walkVal(ReadCache cache, ReadEventHandler handler) throws IOException {
+        switch (mp.getNextType()) {
+            case MAP:
+                walkMap(cache, handler);
+                break;
+            case ARRAY:
+                walkArray(cache, handler);
+                break;
+            default:
+                handler.value(parseVal(false, cache));
+        }
+    }
+
+    private void walkMap(ReadCache cache, ReadEventHandler handler) throws IOException {
+        int sz = this.mp.readMapBegin();
+        for (int i = 0; i < sz; i++) {
+            Object key = parseVal(true, cache);
+            if (i == 0 && key instanceof Tag) {
+                walkTagged(((Tag) key).getValue(), cache, handler);
+                this.mp.readMapEnd(true);
+                return;
+            }
+            if (i == 0)
+                handler.startMap();
+            handler.key(key);
+            walkVal(cache, handler);
+        }
+        if (sz == 0)
+            handler.startMap();
+        this.mp.readMapEnd(true);
+        handler.endMap();
+    }
+
+    private void walkArray(ReadCache cache, ReadEventHandler handler) throws IOException {
+        int sz = this.mp.readArrayBegin();
+        int i = 0;
+        if (sz > 0 && this.mp.getNextType() == ValueType.RAW) {
+            Object firstVal = parseVal(false, cache);
+            if (firstVal instanceof Tag) {
+                walkTagged(((Tag) firstVal).getValue(), cache, handler);
+                this.mp.readArrayEnd();
+                return;
+            }
+            handler.startArray();
+            handler.value(firstVal);
+            i++;
+        } else {
+            handler.startArray();
+        }
+        for (; i < sz; i++)
+            walkVal(cache, handler);
+        this.mp.readArrayEnd();
+        handler.endArray();
+    }
+
+    private void walkTagged(String tag, ReadCache cache, ReadEventHandler handler) throws IOException {
+        if (this.mp.getNextType() != ValueType.ARRAY) {
+            handler.value(parseTagged(tag, cache));
+        } else if (tag.equals("cmap")) {
+            int sz = this.mp.readArrayBegin();
+            handler.startMap();
+            for (int i = 0; i < sz; i += 2) {
+                handler.key(parseVal(false, cache));
+                walkVal(cache, handler);
+            }
+            this.mp.readArrayEnd();
+            handler.endMap();
+        } else if (isCollectionTag(tag)) {
+            handler.startTagged(tag);
+            walkArray(cache, handler);
+            handler.endTagged();
+        } else {
+            handler.value(parseTagged(tag, cache));
+        }
+    }
+
+    @Override
+    public void skipVal(boolean asMapKey, ReadCache cache) throws IOException {
+        switch (mp.getNextType()) {
+            case MAP:
+                for (int remainder = this.mp.readMapBegin(); remainder > 0; remainder--) {
+                    skipVal(true, cache);
+                    skipVal(false, cache);
+                }
+                this.mp.readMapEnd(true);
+                break;
+            case ARRAY:
+                for (int remainder = this.mp.readArrayBegin(); remainder > 0; remainder--)
+                    skipVal(false, cache);
+                this.mp.readArrayEnd();
+                break;
+            case RAW:
+                if (binMp != null && binMp.nextIsBinary()) {
+                    mp.skip();
+                } else {
+                    // only decodes the string if it would be cached
+                    byte[] bytes = mp.readByteArray();
+                    if (bytes.length >= WriteCache.MIN_SIZE_CACHEABLE) {
+                        if (asMapKey || isCacheablePrefix(bytes[0], bytes[1]))
+                            cache.cacheRaw(new String(bytes, StandardCharsets.UTF_8), asMapKey);
+                    } else if (cache.isClock() && bytes.length > 1 && bytes[0] == Constants.SUB) {
+                        // a cache code still counts as a use of its entry
+                        cache.cacheRaw(new String(bytes, StandardCharsets.UTF_8), asMapKey);
+                    }
+                }
+                break;
+            default:
+                mp.skip();
+        }
+    }
+
+    @Override
+    public boolean skip(ReadCache cache) throws IOException {
+        if (nextValue(cache) != NOT_A_STRING)
+            return true;
+        try {
+            mp.getNextType();
+        } catch (EOFException e) {
+            return false;
+        }
+        if (cache.isSession())
+            skipVal(false, cache);
+        else
+            mp.skip();
+        return true;
+    }
+
+    @Override
+    public Iterator<Object> parseElements(final ReadCache cache) throws IOException {
+        if (nextValue(cache) != NOT_A_STRING)
+            throw notAnArray("a string");
+        if (this.mp.getNextType() != ValueType.ARRAY)
+            throw notAnArray("a " + this.mp.getNextType().toString().toLowerCase());
+
+        int sz = this.mp.readArrayBegin();
+        boolean nested = false;
+        boolean hasFirst = false;
+        Object first = null;
+        if (sz > 0 && this.mp.getNextType() == ValueType.RAW) {
+            first = parseVal(false, cache);
+            if (first instanceof Tag) {
+                String tag = ((Tag) first).getValue();
+                if (!isCollectionTag(tag) || this.mp.getNextType() != ValueType.ARRAY)
+                    throw notAnArray("a " + tag);
+                // iterate over the representation instead
+                nested = true;
+                sz = this.mp.readArrayBegin();
+            } else {
+                hasFirst = true;
+                sz--;
+            }
+        }
+
+        final boolean inTag = nested;
+        final boolean firstParsed = hasFirst;
+        final Object firstVal = first;
+        final int size = sz;
+        return new Elements() {
+            private boolean pending = firstParsed;
+            private int remaining = size;
+
+            @Override
+            protected boolean hasMore() throws IOException {
+                if (pending || remaining > 0)
+                    return true;
+                mp.readArrayEnd();
+                if (inTag)
+                    mp.readArrayEnd();
+                return false;
+            }
+
+            @Override
+            protected Object parseNext() throws IOException {
+                if (pending) {
+                    pending = false;
+                    return firstVal;
+                }
+                remaining--;
+                return parseVal(false, cache);
+            }
+
+            @Override
+            protected void skipNext(boolean keepCache) throws IOException {
+                if (pending) {
+                    pending = false;
+                    return;
+                }
+                remaining--;
+                if (keepCache)
+                    skipVal(false, cache);
+                else
+                    mp.skip();
+            }
+        };
+    }
 }
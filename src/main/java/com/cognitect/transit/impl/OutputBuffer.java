@@ -0,0 +1,100 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Unsynchronized byte buffer that emitters write to. With a sink the
+ * buffered bytes are handed to the sink whenever the buffer fills up
+ * (flushing the sink too if flushWhenFull is set) and on flush; without a
+ * sink the buffer grows and keeps everything written since the last reset.
+ */
+public class OutputBuffer extends OutputStream {
+
+    private byte[] buf;
+    private int count;
+    private OutputStream sink;
+    private final boolean flushWhenFull;
+
+    public OutputBuffer(OutputStream sink, int capacity, boolean flushWhenFull) {
+        this.buf = new byte[capacity];
+        this.sink = sink;
+        this.flushWhenFull = flushWhenFull;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length)
+            full(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - count) {
+            if (sink != null && len >= buf.length) {
+                // too large to be worth copying, pass it straight on
+                drain();
+                sink.write(b, off, len);
+                if (flushWhenFull)
+                    sink.flush();
+                return;
+            }
+            full(len);
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    private void full(int needed) throws IOException {
+        if (sink == null) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + needed));
+        } else {
+            drain();
+            if (flushWhenFull)
+                sink.flush();
+        }
+    }
+
+    /**
+     * Hands the buffered bytes to the sink without flushing it
+     */
+    public void drain() throws IOException {
+        if (count > 0) {
+            sink.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (sink != null) {
+            drain();
+            sink.flush();
+        }
+    }
+
+    /**
+     * Rebinds the buffer to another sink; anything still buffered must
+     * have been drained first
+     */
+    public void setSink(OutputStream sink) {
+        this.sink = sink;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] array() {
+        return buf;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.DefaultReadHandler;
+import com.cognitect.transit.ParallelReader;
+import com.cognitect.transit.ReadHandler;
+import com.cognitect.transit.Reader;
+import com.cognitect.transit.TransitFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Cuts the stream into chunks of whole values on the calling thread and
+ * decodes the chunks on an executor, with a bounded number of chunks in
+ * flight so that memory use doesn't depend on the size of the stream.
+ */
+public class ParallelReaderImpl implements ParallelReader {
+
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final Object EOF = new Object();
+
+    private final TransitFactory.Format format;
+    private final Map<String, ReadHandler<?,?>> customHandlers;
+    private final DefaultReadHandler<?> customDefaultHandler;
+    private final Executor executor;
+    private final boolean ordered;
+    private final int maxInFlight;
+
+    public ParallelReaderImpl(TransitFactory.Format format,
+                              Map<String, ReadHandler<?,?>> customHandlers,
+                              DefaultReadHandler<?> customDefaultHandler,
+                              Executor executor, boolean ordered) {
+        this.format = format;
+        this.customHandlers = customHandlers;
+        this.customDefaultHandler = customDefaultHandler;
+        this.executor = (executor != null) ? executor : ForkJoinPool.commonPool();
+        this.ordered = ordered;
+        this.maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    private List<Object> decode(byte[] chunk) {
+        Reader r = TransitFactory.reader(format, chunk, 0, chunk.length, customHandlers, customDefaultHandler);
+        List<Object> values = new ArrayList<Object>();
+        for (Object val = r.read(EOF); val != EOF; val = r.read(EOF))
+            values.add(val);
+        return values;
+    }
+
+    @Override
+    public <T> long readAll(InputStream in, Consumer<? super T> consumer) {
+        ValueSplitter splitter = ValueSplitter.create(format, in, CHUNK_SIZE);
+        try {
+            return ordered ? readOrdered(splitter, consumer) : readUnordered(splitter, consumer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> long deliver(CompletableFuture<List<Object>> f, Consumer<? super T> consumer) {
+        List<Object> values;
+        try {
+            values = f.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+        for (Object val : values)
+            consumer.accept((T) val);
+        return values.size();
+    }
+
+    private <T> long readOrdered(ValueSplitter splitter, Consumer<? super T> consumer) throws IOException {
+        ArrayDeque<CompletableFuture<List<Object>>> window = new ArrayDeque<CompletableFuture<List<Object>>>();
+        long count = 0;
+        byte[] chunk;
+        while ((chunk = splitter.nextChunk()) != null) {
+            if (window.size() == maxInFlight)
+                count += deliver(window.poll(), consumer);
+            final byte[] c = chunk;
+            window.add(CompletableFuture.supplyAsync(() -> decode(c), executor));
+        }
+        while (!window.isEmpty())
+            count += deliver(window.poll(), consumer);
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> long readUnordered(ValueSplitter splitter, final Consumer<? super T> consumer) throws IOException {
+        final Semaphore permits = new Semaphore(maxInFlight);
+        final AtomicLong count = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        byte[] chunk;
+        try {
+            while (failure.get() == null && (chunk = splitter.nextChunk()) != null) {
+                permits.acquireUninterruptibly();
+                final byte[] c = chunk;
+                Runnable task = () -> {
+                    try {
+                        List<Object> values = decode(c);
+                        for (Object val : values)
+                            consumer.accept((T) val);
+                        count.addAndGet(values.size());
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                };
+                try {
+                    executor.execute(task);
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } finally {
+            // wait for the chunks still in flight
+            permits.acquireUninterruptibly(maxInFlight);
+        }
+        if (failure.get() != null)
+            throw rethrow(failure.get());
+        return count.get();
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        return new RuntimeException(e);
+    }
+}
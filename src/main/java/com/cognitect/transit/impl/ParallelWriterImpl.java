@@ -0,0 +1,93 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.FlushPolicy;
+import com.cognitect.transit.ParallelWriter;
+import com.cognitect.transit.TransitFactory;
+import com.cognitect.transit.WriterOptions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Collects values into batches on the calling thread, encodes the batches
+ * on an executor with writers taken from a pool, and writes the encoded
+ * batches out in order. The number of batches in flight is bounded, so
+ * memory use doesn't depend on the number of values.
+ */
+public class ParallelWriterImpl<T> implements ParallelWriter<T> {
+
+    static final int BATCH_SIZE = 256;
+
+    private final WriterPoolImpl<T> pool;
+    private final Executor executor;
+    private final boolean flushStream;
+    private final int maxInFlight;
+
+    public ParallelWriterImpl(TransitFactory.Format format, WriterOptions options, Executor executor) {
+        this.pool = new WriterPoolImpl<T>(format, options);
+        this.executor = (executor != null) ? executor : ForkJoinPool.commonPool();
+        this.flushStream = options.getFlushPolicy() != FlushPolicy.MANUAL;
+        this.maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public long writeAll(OutputStream out, Iterable<? extends T> values) {
+        ArrayDeque<CompletableFuture<byte[]>> window = new ArrayDeque<CompletableFuture<byte[]>>();
+        long count = 0;
+        boolean first = true;
+        try {
+            List<T> batch = new ArrayList<T>(BATCH_SIZE);
+            for (T o : values) {
+                batch.add(o);
+                count++;
+                if (batch.size() == BATCH_SIZE) {
+                    if (window.size() == maxInFlight)
+                        first = writeOut(out, window.poll(), first);
+                    window.add(encode(batch));
+                    batch = new ArrayList<T>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty())
+                window.add(encode(batch));
+            while (!window.isEmpty())
+                first = writeOut(out, window.poll(), first);
+            if (flushStream)
+                out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return count;
+    }
+
+    private CompletableFuture<byte[]> encode(final List<T> batch) {
+        return CompletableFuture.supplyAsync(() -> pool.writeAllToBytes(batch), executor);
+    }
+
+    private boolean writeOut(OutputStream out, CompletableFuture<byte[]> f, boolean first) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = f.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+        if (!first && pool.separated())
+            out.write(' ');
+        out.write(bytes);
+        return false;
+    }
+}
@@ -5,9 +5,12 @@ package com.cognitect.transit.impl;
 
 import com.cognitect.transit.ArrayReadHandler;
 import com.cognitect.transit.MapReadHandler;
+import com.cognitect.transit.ReadEventHandler;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 
 public interface Parser {
 
@@ -28,4 +31,37 @@ public interface Parser {
     Object parseVal(boolean asMapKey, ReadCache cache) throws IOException;
     Object parseMap(boolean asMapKey, ReadCache cache, MapReadHandler<Object, ?, Object, Object, ?> handler) throws IOException;
     Object parseArray(boolean asMapKey, ReadCache cache, ArrayReadHandler<Object, ?, Object, ?> handler) throws IOException;
+
+    /**
+     * Reports the next value to handler as events
+     * @return false if there was no value left to read
+     */
+    boolean parseEvents(ReadCache cache, ReadEventHandler handler) throws IOException;
+
+    /**
+     * Starts reading the next value, which must be an array, set or list,
+     * and returns an iterator parsing its elements on demand
+     */
+    Iterator<Object> parseElements(ReadCache cache) throws IOException;
+
+    /**
+     * Advances over the next value without building it. Cacheable strings
+     * in the value are still added to cache, so that cache codes after it
+     * resolve as if it had been parsed.
+     */
+    void skipVal(boolean asMapKey, ReadCache cache) throws IOException;
+
+    /**
+     * Advances over the next top-level value. Nothing in it is cached
+     * unless the cache is kept across values (see ReadCache.isSession).
+     * @return false if there was no value left to skip
+     */
+    boolean skip(ReadCache cache) throws IOException;
+
+    /**
+     * Reads the next value, which must be an array, set or list, building
+     * only the elements at indexes
+     * @return the selected elements, in the order of indexes
+     */
+    List<Object> parseSelected(ReadCache cache, int[] indexes) throws IOException;
 }
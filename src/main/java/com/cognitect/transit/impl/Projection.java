@@ -0,0 +1,99 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.Keyword;
+import com.cognitect.transit.Symbol;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tree of the map keys to decode, built from key paths. A key mapped
+ * to null selects its whole value; entries with other keys are skipped.
+ * Arrays, sets and lists are transparent, so a projection applies to each
+ * of their elements. String, keyword and symbol keys are also matched in
+ * their encoded form, so that keys need not be decoded to be skipped.
+ */
+public class Projection {
+
+    private final Map<Object, Projection> children = new HashMap<Object, Projection>();
+    private final Map<String, Object> encoded = new HashMap<String, Object>();
+    private boolean allEncoded = true;
+
+    private void put(Object key, Projection child) {
+        children.put(key, child);
+        String enc = encode(key);
+        if (enc != null)
+            encoded.put(enc, key);
+        else
+            allEncoded = false;
+    }
+
+    private static String encode(Object key) {
+        if (key instanceof String) {
+            String s = (String) key;
+            if (s.length() > 0 && (s.charAt(0) == Constants.ESC || s.charAt(0) == Constants.SUB || s.charAt(0) == Constants.RESERVED))
+                return Constants.ESC_STR + s;
+            return s;
+        } else if (key instanceof Keyword) {
+            return Constants.ESC_STR + key.toString();
+        } else if (key instanceof Symbol) {
+            return Constants.ESC_STR + "$" + key.toString();
+        }
+        return null;
+    }
+
+    /**
+     * @param paths key paths, each a list of map keys from the outside in
+     * @return the projection, or null if a path selects the whole value
+     */
+    public static Projection of(Collection<? extends List<?>> paths) {
+        Projection root = new Projection();
+        for (List<?> path : paths) {
+            if (path.isEmpty())
+                return null;
+            Projection node = root;
+            for (int i = 0; i < path.size(); i++) {
+                Object key = path.get(i);
+                if (i == path.size() - 1) {
+                    node.put(key, null);
+                    break;
+                }
+                if (node.children.containsKey(key) && node.children.get(key) == null)
+                    break; // a shorter path already selects all of it
+                Projection child = node.children.get(key);
+                if (child == null) {
+                    child = new Projection();
+                    node.put(key, child);
+                }
+                node = child;
+            }
+        }
+        return root;
+    }
+
+    public boolean selects(Object key) {
+        return children.containsKey(key);
+    }
+
+    /**
+     * Whether the key encoded as enc is selected; null if that can only be
+     * told from the decoded key
+     */
+    public Boolean selectsEncoded(String enc) {
+        if (encoded.containsKey(enc))
+            return Boolean.TRUE;
+        return allEncoded ? Boolean.FALSE : null;
+    }
+
+    /**
+     * @return the projection of the value under key, null for all of it
+     */
+    public Projection get(Object key) {
+        return children.get(key);
+    }
+}
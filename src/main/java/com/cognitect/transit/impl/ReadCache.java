@@ -5,11 +5,23 @@ package com.cognitect.transit.impl;
 
 public class ReadCache {
 
+    /**
+     * Returned by cacheRead for a cache marker, after acting on it
+     */
+    public static final Object MARKER = new Object();
+
     private Object[] cache;
+    // entries cached by a skip, still in their encoded form
+    private boolean[] raw;
     private int index;
+    // whether the cache is kept across top-level values
+    private boolean session;
+    // replaces entries once all codes are taken, if the writer does
+    private CacheClock clock;
 
     public ReadCache() {
         cache = new Object[WriteCache.MAX_CACHE_ENTRIES];
+        raw = new boolean[WriteCache.MAX_CACHE_ENTRIES];
         index = 0;
     }
 
@@ -37,20 +49,194 @@ public class ReadCache {
     public Object cacheRead(String s, boolean asMapKey, AbstractParser p) {
         if(s.length() != 0) {
             if(cacheCode(s)) {
-                return cache[codeToIndex(s)];
+                if(s.length() == 2 && s.charAt(1) < WriteCache.BASE_CHAR_IDX)
+                    return marker(s.charAt(1));
+                int i = codeToIndex(s);
+                if(clock != null)
+                    clock.use(i);
+                if(raw[i] && p != null) {
+                    cache[i] = p.parseString(cache[i]);
+                    raw[i] = false;
+                }
+                return cache[i];
             } else if(WriteCache.isCacheable(s, asMapKey)) {
-                if(index == WriteCache.MAX_CACHE_ENTRIES) {
-                    init();
+                int i = (index < WriteCache.MAX_CACHE_ENTRIES) ? index++ : replace(s.hashCode());
+                Object val = (p != null ? p.parseString(s) : s);
+                if(i >= 0) {
+                    raw[i] = false;
+                    cache[i] = val;
                 }
-                return cache[index++] = (p != null ? p.parseString(s) : s);
+                return val;
             }
         }
         return p != null ? p.parseString(s) : s;
     }
 
+    /**
+     * Same as cacheRead(String, ...) for the string held in
+     * chars[offset, offset + length), which is only copied into a String
+     * if it has to be decoded
+     */
+    public Object cacheRead(char[] chars, int offset, int length, boolean asMapKey, AbstractParser p) {
+        if(length != 0) {
+            if(chars[offset] == Constants.SUB && !(length == 2 && chars[offset + 1] == ' ')) {
+                if(isMarker(chars, offset, length))
+                    return marker(chars[offset + 1]);
+                int i = (length == 2) ?
+                        chars[offset + 1] - WriteCache.BASE_CHAR_IDX :
+                        (chars[offset + 1] - WriteCache.BASE_CHAR_IDX) * WriteCache.CACHE_CODE_DIGITS +
+                                (chars[offset + 2] - WriteCache.BASE_CHAR_IDX);
+                if(clock != null)
+                    clock.use(i);
+                if(raw[i]) {
+                    cache[i] = p.parseString(cache[i]);
+                    raw[i] = false;
+                }
+                return cache[i];
+            } else if(length >= WriteCache.MIN_SIZE_CACHEABLE &&
+                    (asMapKey || AbstractParser.isCacheablePrefix(chars[offset], chars[offset + 1]))) {
+                int i = (index < WriteCache.MAX_CACHE_ENTRIES) ? index++ : replace(hash(chars, offset, length));
+                Object val = p.parseString(chars, offset, length);
+                if(i >= 0) {
+                    raw[i] = false;
+                    cache[i] = val;
+                }
+                return val;
+            }
+        }
+        return p.parseString(chars, offset, length);
+    }
+
+    /**
+     * Caches s in its encoded form if it is cacheable. It is decoded when
+     * first referred to, if ever. A cache code counts as a use of the
+     * entry it refers to.
+     */
+    public void cacheRaw(String s, boolean asMapKey) {
+        if(s.length() > 1 && cacheCode(s)) {
+            if(clock != null && s.charAt(1) >= WriteCache.BASE_CHAR_IDX)
+                clock.use(codeToIndex(s));
+        } else if(WriteCache.isCacheable(s, asMapKey)) {
+            int i = (index < WriteCache.MAX_CACHE_ENTRIES) ? index++ : replace(s.hashCode());
+            if(i >= 0) {
+                raw[i] = true;
+                cache[i] = s;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the entry s refers to, which counts as a use
+     * of it, or -1 if s is not a cache code
+     */
+    public int codeIndex(String s) {
+        if(s.length() == 0 || !cacheCode(s))
+            return -1;
+        int i = codeToIndex(s);
+        if(clock != null)
+            clock.use(i);
+        return i;
+    }
+
+    // where to cache a string once all codes are taken, or -1 to not
+    // cache it, the same way the writer decides
+    private int replace(int hash) {
+        if(clock == null) {
+            init();
+            return index++;
+        }
+        return clock.replace(hash);
+    }
+
+    // same as String.hashCode of the chars
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for(int i = offset; i < offset + length; i++)
+            h = 31 * h + chars[i];
+        return h;
+    }
+
+    public Object entry(int i) {
+        return cache[i];
+    }
+
+    /**
+     * @return whether entry i is still in its encoded form
+     */
+    public boolean isRaw(int i) {
+        return raw[i];
+    }
+
 	public ReadCache init(){
 		//need not clear array
+		if (clock != null)
+			clock.clear(index);
 		index = 0;
 		return this;
 	}
+
+    /**
+     * @return whether chars[offset, offset + length) is a cache marker
+     */
+    public static boolean isMarker(char[] chars, int offset, int length) {
+        return length == 2 && chars[offset] == Constants.SUB &&
+                (chars[offset + 1] == '!' || chars[offset + 1] == '*');
+    }
+
+    /**
+     * Acts on the cache marker "^" + c. On a reset marker the cache is
+     * emptied and from then on kept from one top-level value to the next;
+     * on a clock marker entries are replaced according to a CacheClock
+     * from then on, like the writer does.
+     * @return MARKER
+     */
+    public Object marker(char c) {
+        if(c == '!') {
+            init();
+            session = true;
+        } else if(c == '*') {
+            init();
+            if(clock == null)
+                clock = new CacheClock();
+        } else {
+            throw new RuntimeException("Unknown cache marker: " + Constants.SUB + c);
+        }
+        return MARKER;
+    }
+
+    /**
+     * Empties the cache and forgets what markers set up, for reading
+     * another stream
+     */
+    public ReadCache clear() {
+        init();
+        session = false;
+        clock = null;
+        return this;
+    }
+
+    /**
+     * @return whether a reset marker was read, so that the cache is kept
+     * across top-level values
+     */
+    public boolean isSession() {
+        return session;
+    }
+
+    /**
+     * @return whether entries are replaced according to a CacheClock
+     */
+    public boolean isClock() {
+        return clock != null;
+    }
+
+    /**
+     * Readies the cache for the next top-level value, which starts out
+     * with an empty cache (and clock) unless the stream is in session mode
+     */
+    public ReadCache startValue() {
+        if(!session)
+            init();
+        return this;
+    }
 }
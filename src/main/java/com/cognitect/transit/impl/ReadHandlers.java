@@ -7,6 +7,10 @@ import com.cognitect.transit.*;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.*;
 
 public class ReadHandlers {
@@ -241,29 +245,62 @@ public class ReadHandlers {
         }
     }
 
+    static Object time(TransitFactory.TimeRepresentation representation, long epochSecond, int nanos) {
+        switch (representation) {
+            case INSTANT:
+                return Instant.ofEpochSecond(epochSecond, nanos);
+            case ZONED_DATE_TIME:
+                return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nanos), ZoneOffset.UTC);
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(Math.floorDiv(epochSecond, 86400L));
+            default:
+                return new Date(epochSecond * 1000 + nanos / 1000000);
+        }
+    }
+
     public static class VerboseTimeReadHandler implements ReadHandler<Object, String> {
 
+        private final TransitFactory.TimeRepresentation representation;
+
+        public VerboseTimeReadHandler() {
+            this(TransitFactory.TimeRepresentation.DATE);
+        }
+
+        public VerboseTimeReadHandler(TransitFactory.TimeRepresentation representation) {
+            this.representation = representation;
+        }
+
         @Override
         public Object fromRep(String rep) {
-            Calendar t = javax.xml.bind.DatatypeConverter.parseDateTime(rep);
-            t.setTimeZone(TimeZone.getTimeZone("Zulu"));
-            return t.getTime();
+            if (representation == TransitFactory.TimeRepresentation.DATE)
+                return new Date(Iso8601.parseMillis(rep));
+            return time(representation, Iso8601.epochSecond(rep), Iso8601.nanos(rep));
         }
     }
 
     public static class TimeReadHandler implements ReadHandler<Object, Object> {
 
+        private final TransitFactory.TimeRepresentation representation;
+
+        public TimeReadHandler() {
+            this(TransitFactory.TimeRepresentation.DATE);
+        }
+
+        public TimeReadHandler(TransitFactory.TimeRepresentation representation) {
+            this.representation = representation;
+        }
+
         @Override
         public Object fromRep(Object rep) {
-            Long n;
+            long n;
             if (rep instanceof Long)
                 n = (Long) rep;
             else
                 n = Long.decode((String) rep);
 
-            Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Zulu"));
-            cal.setTimeInMillis(n);
-            return cal.getTime();
+            if (representation == TransitFactory.TimeRepresentation.DATE)
+                return new Date(n);
+            return time(representation, Math.floorDiv(n, 1000L), (int) Math.floorMod(n, 1000L) * 1000000);
         }
     }
 
@@ -274,7 +311,27 @@ public class ReadHandlers {
         public Object fromRep(String rep) { return new URIImpl(rep); }
     }
 
-    public static class UUIDReadHandler implements ReadHandler<Object, Object> {
+    public static class UUIDReadHandler implements ArrayReadHandler<UUIDReadHandler.Bits, Object, Object, Object> {
+
+        /**
+         * The halves of a UUID read so far
+         */
+        static final class Bits {
+            long msb;
+            long lsb;
+            int count;
+
+            Bits add(long l) {
+                if (count == 0)
+                    msb = l;
+                else if (count == 1)
+                    lsb = l;
+                else
+                    throw new RuntimeException("Too many elements for a UUID");
+                count++;
+                return this;
+            }
+        }
 
         @Override
         @SuppressWarnings("unchecked")
@@ -288,6 +345,46 @@ public class ReadHandlers {
                 return new UUID(l.get(0), l.get(1));
             }
         }
+
+        /**
+         * Reads the two longs of a UUID without boxing them or building a list
+         */
+        @Override
+        public PrimitiveArrayReader<Bits, Object> arrayReader() {
+            return new PrimitiveArrayReader<Bits, Object>() {
+                @Override
+                public Bits init() {
+                    return new Bits();
+                }
+
+                @Override
+                public Bits init(int size) {
+                    return new Bits();
+                }
+
+                @Override
+                public Bits add(Bits a, Object item) {
+                    return a.add(((Number) item).longValue());
+                }
+
+                @Override
+                public Bits addLong(Bits a, long item) {
+                    return a.add(item);
+                }
+
+                @Override
+                public Bits addDouble(Bits a, double item) {
+                    return a.add((long) item);
+                }
+
+                @Override
+                public Object complete(Bits a) {
+                    if (a.count != 2)
+                        throw new RuntimeException("Expected 2 elements for a UUID, got " + a.count);
+                    return new UUID(a.msb, a.lsb);
+                }
+            };
+        }
     }
 
     public static class LinkReadHandler implements ReadHandler<Object, Map<String, String>> {
@@ -296,4 +393,148 @@ public class ReadHandlers {
             return new LinkImpl(rep);
         }
     }
+    /**
+     * Growable long[] for PrimitiveArrayReaders
+     */
+    static class LongArrayBuilder {
+        long[] a;
+        int n;
+
+        LongArrayBuilder(int size) {
+            a = new long[Math.max(size, 16)];
+        }
+
+        LongArrayBuilder add(long v) {
+            if (n == a.length)
+                a = Arrays.copyOf(a, n << 1);
+            a[n++] = v;
+            return this;
+        }
+
+        long[] complete() {
+            return (n == a.length) ? a : Arrays.copyOf(a, n);
+        }
+    }
+
+    /**
+     * Growable double[] for PrimitiveArrayReaders
+     */
+    static class DoubleArrayBuilder {
+        double[] a;
+        int n;
+
+        DoubleArrayBuilder(int size) {
+            a = new double[Math.max(size, 16)];
+        }
+
+        DoubleArrayBuilder add(double v) {
+            if (n == a.length)
+                a = Arrays.copyOf(a, n << 1);
+            a[n++] = v;
+            return this;
+        }
+
+        double[] complete() {
+            return (n == a.length) ? a : Arrays.copyOf(a, n);
+        }
+    }
+
+    public static class LongArrayReadHandler implements ArrayReadHandler<LongArrayBuilder, long[], Object, List<Object>> {
+
+        @Override
+        public long[] fromRep(List<Object> rep) {
+            long[] a = new long[rep.size()];
+            for (int i = 0; i < a.length; i++)
+                a[i] = ((Number) rep.get(i)).longValue();
+            return a;
+        }
+
+        @Override
+        public PrimitiveArrayReader<LongArrayBuilder, long[]> arrayReader() {
+            return new PrimitiveArrayReader<LongArrayBuilder, long[]>() {
+                @Override
+                public LongArrayBuilder init() {
+                    return init(16);
+                }
+
+                @Override
+                public LongArrayBuilder init(int size) {
+                    return new LongArrayBuilder(size);
+                }
+
+                @Override
+                public LongArrayBuilder add(LongArrayBuilder a, Object item) {
+                    return a.add(((Number) item).longValue());
+                }
+
+                @Override
+                public LongArrayBuilder addLong(LongArrayBuilder a, long item) {
+                    return a.add(item);
+                }
+
+                @Override
+                public LongArrayBuilder addDouble(LongArrayBuilder a, double item) {
+                    return a.add((long) item);
+                }
+
+                @Override
+                public long[] complete(LongArrayBuilder a) {
+                    return a.complete();
+                }
+            };
+        }
+    }
+
+    public static class DoubleArrayReadHandler implements ArrayReadHandler<DoubleArrayBuilder, double[], Object, List<Object>> {
+
+        @Override
+        public double[] fromRep(List<Object> rep) {
+            double[] a = new double[rep.size()];
+            for (int i = 0; i < a.length; i++)
+                a[i] = toDouble(rep.get(i));
+            return a;
+        }
+
+        // JSON generators write NaN and infinities as strings
+        private static double toDouble(Object item) {
+            if (item instanceof String)
+                return Double.parseDouble((String) item);
+            return ((Number) item).doubleValue();
+        }
+
+        @Override
+        public PrimitiveArrayReader<DoubleArrayBuilder, double[]> arrayReader() {
+            return new PrimitiveArrayReader<DoubleArrayBuilder, double[]>() {
+                @Override
+                public DoubleArrayBuilder init() {
+                    return init(16);
+                }
+
+                @Override
+                public DoubleArrayBuilder init(int size) {
+                    return new DoubleArrayBuilder(size);
+                }
+
+                @Override
+                public DoubleArrayBuilder add(DoubleArrayBuilder a, Object item) {
+                    return a.add(toDouble(item));
+                }
+
+                @Override
+                public DoubleArrayBuilder addLong(DoubleArrayBuilder a, long item) {
+                    return a.add(item);
+                }
+
+                @Override
+                public DoubleArrayBuilder addDouble(DoubleArrayBuilder a, double item) {
+                    return a.add(item);
+                }
+
+                @Override
+                public double[] complete(DoubleArrayBuilder a) {
+                    return a.complete();
+                }
+            };
+        }
+    }
 }
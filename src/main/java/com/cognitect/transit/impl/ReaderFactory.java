@@ -7,15 +7,23 @@ import com.cognitect.transit.*;
 import com.cognitect.transit.SPI.ReaderSPI;
 import com.fasterxml.jackson.core.JsonFactory;
 import org.msgpack.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.unpacker.Unpacker;
 
 import java.io.EOFException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 public class ReaderFactory {
 
+    static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final MessagePack MSGPACK = new MessagePack();
+
     private static Map<Map<String, ReadHandler<?,?>>, ReadHandlerMap> handlerCache = new Cache<Map<String, ReadHandler<?,?>>, ReadHandlerMap>();
 
     public static Map<String, ReadHandler<?,?>> defaultHandlers() {
@@ -43,6 +51,8 @@ public class ReaderFactory {
         handlers.put("ratio", new ReadHandlers.RatioReadHandler());
         handlers.put("cmap", new ReadHandlers.CmapReadHandler());
         handlers.put("link", new ReadHandlers.LinkReadHandler());
+        handlers.put("longs", new ReadHandlers.LongArrayReadHandler());
+        handlers.put("doubles", new ReadHandlers.DoubleArrayReadHandler());
         return handlers;
     }
 
@@ -55,7 +65,7 @@ public class ReaderFactory {
         };
     }
 
-    private static Map<String, ReadHandler<?,?>> handlerMap(Map<String, ReadHandler<?, ?>> customHandlers) {
+    static Map<String, ReadHandler<?,?>> handlerMap(Map<String, ReadHandler<?, ?>> customHandlers) {
         if (customHandlers instanceof ReadHandlerMap) {
             return customHandlers;
         }
@@ -70,7 +80,7 @@ public class ReaderFactory {
         }
     }
 
-    private static DefaultReadHandler defaultHandler(DefaultReadHandler customDefaultHandler) {
+    static DefaultReadHandler defaultHandler(DefaultReadHandler customDefaultHandler) {
         return customDefaultHandler != null ? customDefaultHandler : defaultDefaultHandler();
     }
 
@@ -80,28 +90,86 @@ public class ReaderFactory {
         return new JsonReaderImpl(in, handlerMap(handlers), defaultHandler(customDefaultHandler));
     }
 
+    public static Reader getJsonInstance(byte[] bytes, int offset, int length,
+                                         Map<String, ReadHandler<?,?>> handlers,
+                                         DefaultReadHandler<?> customDefaultHandler) {
+        try {
+            return new JsonReaderImpl(JSON_FACTORY.createParser(bytes, offset, length), handlerMap(handlers), defaultHandler(customDefaultHandler));
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Reader getJsonInstance(ByteBuffer buffer,
+                                         Map<String, ReadHandler<?,?>> handlers,
+                                         DefaultReadHandler<?> customDefaultHandler) {
+        if (buffer.hasArray())
+            return getJsonInstance(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+                    handlers, customDefaultHandler);
+        else
+            return getJsonInstance(new ByteBufferInputStream(buffer.duplicate()), handlers, customDefaultHandler);
+    }
+
     public static Reader getMsgpackInstance(InputStream in,
                                             Map<String, ReadHandler<?,?>> handlers,
                                             DefaultReadHandler<?> customDefaultHandler) {
-        return new MsgPackReaderImpl(in, handlerMap(handlers), defaultHandler(customDefaultHandler));
+        return new MsgPackReaderImpl(new MsgpackBinUnpacker(MSGPACK, in), handlerMap(handlers), defaultHandler(customDefaultHandler));
+    }
+
+    public static Reader getMsgpackInstance(byte[] bytes, int offset, int length,
+                                            Map<String, ReadHandler<?,?>> handlers,
+                                            DefaultReadHandler<?> customDefaultHandler) {
+        return new MsgPackReaderImpl(new MsgpackBinUnpacker(MSGPACK, bytes, offset, length), handlerMap(handlers), defaultHandler(customDefaultHandler));
+    }
+
+    public static Reader getMsgpackInstance(ByteBuffer buffer,
+                                            Map<String, ReadHandler<?,?>> handlers,
+                                            DefaultReadHandler<?> customDefaultHandler) {
+        // the unpacker reads the buffer in place, slice it so the caller's position stays put
+        return new MsgPackReaderImpl(new MsgpackBinUnpacker(MSGPACK, buffer.slice()), handlerMap(handlers), defaultHandler(customDefaultHandler));
+    }
+
+    public static Reader getMsgpackCoreInstance(InputStream in,
+                                                Map<String, ReadHandler<?,?>> handlers,
+                                                DefaultReadHandler<?> customDefaultHandler) {
+        return new MsgpackCoreReaderImpl(org.msgpack.core.MessagePack.newDefaultUnpacker(in), handlerMap(handlers), defaultHandler(customDefaultHandler));
+    }
+
+    public static Reader getMsgpackCoreInstance(byte[] bytes, int offset, int length,
+                                                Map<String, ReadHandler<?,?>> handlers,
+                                                DefaultReadHandler<?> customDefaultHandler) {
+        return new MsgpackCoreReaderImpl(org.msgpack.core.MessagePack.newDefaultUnpacker(bytes, offset, length), handlerMap(handlers), defaultHandler(customDefaultHandler));
+    }
+
+    public static Reader getMsgpackCoreInstance(ByteBuffer buffer,
+                                                Map<String, ReadHandler<?,?>> handlers,
+                                                DefaultReadHandler<?> customDefaultHandler) {
+        return new MsgpackCoreReaderImpl(org.msgpack.core.MessagePack.newDefaultUnpacker(buffer.slice()), handlerMap(handlers), defaultHandler(customDefaultHandler));
+    }
+
+    /**
+     * Makes reader decode only the map entries selected by keyPaths
+     */
+    public static Reader project(Reader reader, Collection<? extends List<?>> keyPaths) {
+        ((ReaderImpl) reader).projection = Projection.of(keyPaths);
+        return reader;
     }
 
     private abstract static class ReaderImpl implements Reader, ReaderSPI {
 
         private static final Object EOF_MARKER = new Object();
 
-        InputStream in;
         Map<String, ReadHandler<?,?>> handlers;
         DefaultReadHandler defaultHandler;
         MapReader<?, Map<Object, Object>, Object, Object> mapBuilder;
         ArrayReader<?, List<Object>, Object> listBuilder;
         ReadCache cache;
         AbstractParser p;
+        Projection projection;
         boolean initialized;
 
-        public ReaderImpl(InputStream in, Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
+        public ReaderImpl(Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
             this.initialized = false;
-            this.in = in;
             this.handlers = handlers;
             this.defaultHandler = defaultHandler;
             this.cache = new ReadCache();
@@ -114,7 +182,7 @@ public class ReaderFactory {
                 initialize();
             }
             try {
-                return (T) p.parse(cache.init());
+                return (T) p.parse(cache.startValue());
             } catch (Throwable e) {
                 throw new RuntimeException(e);
             }
@@ -128,7 +196,7 @@ public class ReaderFactory {
             }
             try {
                 T eof = (T) EOF_MARKER;
-                T val = (T) p.parse(cache.init(), eof);
+                T val = (T) p.parse(cache.startValue(), eof);
                 return val == eof ? eofValue : val;
             } catch (final EOFException eof) {
                 return eofValue;
@@ -137,6 +205,62 @@ public class ReaderFactory {
             }
         }
 
+        @Override
+        public boolean readEvents(ReadEventHandler handler) {
+            if (!initialized) {
+                initialize();
+            }
+            try {
+                return p.parseEvents(cache.startValue(), handler);
+            } catch (EOFException eof) {
+                return false;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Iterator<T> readElements() {
+            if (!initialized) {
+                initialize();
+            }
+            try {
+                return (Iterator<T>) p.parseElements(cache.startValue());
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean skip() {
+            if (!initialized) {
+                initialize();
+            }
+            try {
+                return p.skip(cache.startValue());
+            } catch (EOFException eof) {
+                return false;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> readSelected(int... indexes) {
+            if (!initialized) {
+                initialize();
+            }
+            try {
+                return (List<T>) p.parseSelected(cache.startValue(), indexes);
+            } catch (IndexOutOfBoundsException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         @Override
         public Reader setBuilders(MapReader<?, Map<Object, Object>, Object, Object> mapBuilder,
                                   ArrayReader<?, List<Object>, Object> listBuilder) {
@@ -154,6 +278,7 @@ public class ReaderFactory {
         protected void initialize() {
             ensureBuilders();
             p = createParser();
+            p.setProjection(projection);
             initialized = true;
         }
 
@@ -162,32 +287,64 @@ public class ReaderFactory {
 
     private static class JsonReaderImpl extends ReaderImpl {
 
+        private com.fasterxml.jackson.core.JsonParser jp;
+        private final InputStream in;
+
+        public JsonReaderImpl(com.fasterxml.jackson.core.JsonParser jp, Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
+            super(handlers, defaultHandler);
+            this.jp = jp;
+            this.in = null;
+        }
+
         public JsonReaderImpl(InputStream in, Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
-            super(in, handlers, defaultHandler);
+            super(handlers, defaultHandler);
+            this.in = in;
         }
 
         @Override
         protected AbstractParser createParser() {
-            try {
-                JsonFactory jf = new JsonFactory();
-                return new JsonParser(jf.createParser(in), handlers, defaultHandler,
-                        mapBuilder, listBuilder);
-            } catch (Throwable e) {
-                throw new RuntimeException(e);
+            // jackson reads from a stream to detect its encoding, which
+            // must wait for the first read
+            if (jp == null) {
+                try {
+                    jp = JSON_FACTORY.createParser(in);
+                } catch (Throwable e) {
+                    throw new RuntimeException(e);
+                }
             }
+            return new JsonParser(jp, handlers, defaultHandler,
+                    mapBuilder, listBuilder);
         }
     }
 
     private static class MsgPackReaderImpl extends ReaderImpl {
 
-        public MsgPackReaderImpl(InputStream in, Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
-            super(in, handlers, defaultHandler);
+        private final Unpacker unpacker;
+
+        public MsgPackReaderImpl(Unpacker unpacker, Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
+            super(handlers, defaultHandler);
+            this.unpacker = unpacker;
+        }
+
+        @Override
+        protected AbstractParser createParser() {
+            return new MsgpackParser(unpacker, handlers, defaultHandler,
+                    mapBuilder, listBuilder);
+        }
+    }
+
+    private static class MsgpackCoreReaderImpl extends ReaderImpl {
+
+        private final MessageUnpacker unpacker;
+
+        public MsgpackCoreReaderImpl(MessageUnpacker unpacker, Map<String, ReadHandler<?,?>> handlers, DefaultReadHandler<?> defaultHandler) {
+            super(handlers, defaultHandler);
+            this.unpacker = unpacker;
         }
 
         @Override
         protected AbstractParser createParser() {
-            MessagePack mp = new MessagePack();
-            return new MsgpackParser(mp.createUnpacker(in), handlers, defaultHandler,
+            return new MsgpackCoreParser(unpacker, handlers, defaultHandler,
                     mapBuilder, listBuilder);
         }
     }
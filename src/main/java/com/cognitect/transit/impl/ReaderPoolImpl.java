@@ -0,0 +1,100 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.DefaultReadHandler;
+import com.cognitect.transit.ReadHandler;
+import com.cognitect.transit.ReaderPool;
+import com.cognitect.transit.TransitFactory;
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReaderPoolImpl implements ReaderPool {
+
+    public static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    // closing a parser hands its buffers back for reuse, but must leave the stream open
+    private static final JsonFactory JSON_FACTORY =
+            new JsonFactory().disable(com.fasterxml.jackson.core.JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final TransitFactory.Format format;
+    private final Map<String, ReadHandler<?,?>> handlers;
+    private final DefaultReadHandler<?> defaultHandler;
+    private final MapBuilderImpl mapBuilder = new MapBuilderImpl();
+    private final ListBuilderImpl listBuilder = new ListBuilderImpl();
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<ReadCache> idle = new ConcurrentLinkedQueue<ReadCache>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public ReaderPoolImpl(TransitFactory.Format format,
+                          Map<String, ReadHandler<?,?>> customHandlers,
+                          DefaultReadHandler<?> customDefaultHandler) {
+        this(format, customHandlers, customDefaultHandler, DEFAULT_MAX_IDLE);
+    }
+
+    public ReaderPoolImpl(TransitFactory.Format format,
+                          Map<String, ReadHandler<?,?>> customHandlers,
+                          DefaultReadHandler<?> customDefaultHandler,
+                          int maxIdle) {
+        if (format == null)
+            throw new IllegalArgumentException("Unknown Reader type: null");
+        this.format = format;
+        this.handlers = ReaderFactory.handlerMap(customHandlers);
+        this.defaultHandler = ReaderFactory.defaultHandler(customDefaultHandler);
+        this.maxIdle = maxIdle;
+    }
+
+    private ReadCache acquire() {
+        ReadCache cache = idle.poll();
+        if (cache == null)
+            return new ReadCache();
+        idleCount.decrementAndGet();
+        return cache;
+    }
+
+    private void release(ReadCache cache) {
+        if (idleCount.incrementAndGet() <= maxIdle)
+            idle.offer(cache);
+        else
+            idleCount.decrementAndGet();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T read(InputStream in) {
+        ReadCache cache = acquire();
+        try {
+            T val;
+            switch (format) {
+                case JSON:
+                case JSON_VERBOSE:
+                    com.fasterxml.jackson.core.JsonParser jp = JSON_FACTORY.createParser(in);
+                    try {
+                        val = (T) new JsonParser(jp, handlers, defaultHandler, mapBuilder, listBuilder).parse(cache.clear());
+                    } finally {
+                        jp.close();
+                    }
+                    break;
+                case MSGPACK:
+                    val = (T) new MsgpackParser(new MsgpackBinUnpacker(ReaderFactory.MSGPACK, in), handlers, defaultHandler,
+                            mapBuilder, listBuilder).parse(cache.clear());
+                    break;
+                case MSGPACK_CORE:
+                    val = (T) new MsgpackCoreParser(org.msgpack.core.MessagePack.newDefaultUnpacker(in), handlers, defaultHandler,
+                            mapBuilder, listBuilder).parse(cache.clear());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown Reader type: " + format.toString());
+            }
+            release(cache);
+            return val;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.StreamWriter;
+
+import java.util.Arrays;
+
+/**
+ * Drives an emitter for one top-level value written piece by piece. Keeps
+ * a stack of the open arrays and maps to check that keys, values and
+ * declared sizes line up, since the emitters themselves can't.
+ */
+public class StreamWriterImpl implements StreamWriter {
+
+    /**
+     * Called when the top-level value is complete or abandoned, or to flush
+     */
+    public interface Owner {
+        void completed() throws Exception;
+        void aborted();
+        void flush();
+    }
+
+    private static final long UNKNOWN = -1;
+
+    private final AbstractEmitter emitter;
+    private final WriteCache cache;
+    private final Owner owner;
+
+    private long[] remaining = new long[16];
+    private boolean[] isMap = new boolean[16];
+    private boolean[] keyWritten = new boolean[16];
+    private int depth;
+    private boolean completed;
+
+    public StreamWriterImpl(AbstractEmitter emitter, WriteCache cache, Owner owner) {
+        this.emitter = emitter;
+        this.cache = cache;
+        this.owner = owner;
+    }
+
+    @Override
+    public StreamWriter beginArray() {
+        return begin(false, UNKNOWN);
+    }
+
+    @Override
+    public StreamWriter beginArray(long size) {
+        return begin(false, checkSize(size));
+    }
+
+    @Override
+    public StreamWriter beginMap() {
+        return begin(true, UNKNOWN);
+    }
+
+    @Override
+    public StreamWriter beginMap(long size) {
+        return begin(true, checkSize(size));
+    }
+
+    @Override
+    public StreamWriter key(Object key) {
+        checkOpen();
+        if (depth == 0 || !isMap[depth - 1] || keyWritten[depth - 1])
+            throw new IllegalStateException("Not expecting a key");
+        if (!emitter.stringableKey(key))
+            throw new IllegalArgumentException("Cannot be used as a map key " + key);
+        element();
+        try {
+            emitter.marshal(key, true, cache);
+        } catch (Throwable e) {
+            throw abort(e);
+        }
+        keyWritten[depth - 1] = true;
+        return this;
+    }
+
+    @Override
+    public StreamWriter value(Object o) {
+        checkValue();
+        try {
+            if (depth == 0) {
+                emitter.marshalTop(o, cache);
+                complete();
+            } else {
+                emitter.marshal(o, false, cache);
+                valueWritten();
+            }
+        } catch (Throwable e) {
+            throw abort(e);
+        }
+        return this;
+    }
+
+    @Override
+    public StreamWriter end() {
+        checkOpen();
+        if (depth == 0)
+            throw new IllegalStateException("Nothing to end");
+        int i = depth - 1;
+        if (isMap[i] && keyWritten[i])
+            throw new IllegalStateException("Missing value for the last key");
+        if (remaining[i] > 0)
+            throw new IllegalStateException((isMap[i] ? "Map" : "Array") + " ended " + remaining[i] + " short of its size");
+        try {
+            if (isMap[i])
+                emitter.emitMapFinish();
+            else
+                emitter.emitArrayEnd();
+            depth--;
+            if (depth == 0)
+                complete();
+            else
+                valueWritten();
+        } catch (Throwable e) {
+            throw abort(e);
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        owner.flush();
+    }
+
+    private static long checkSize(long size) {
+        if (size < 0 || size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid size " + size);
+        return size;
+    }
+
+    private StreamWriter begin(boolean map, long size) {
+        if (size == UNKNOWN && emitter.needsSizes())
+            throw new IllegalStateException("This format needs the size of arrays and maps up front");
+        checkValue();
+        Long sz = (size == UNKNOWN) ? null : size;
+        try {
+            if (map)
+                emitter.emitMapBegin(sz, cache);
+            else
+                emitter.emitArrayStart(sz);
+        } catch (Throwable e) {
+            throw abort(e);
+        }
+        if (depth == remaining.length) {
+            remaining = Arrays.copyOf(remaining, depth << 1);
+            isMap = Arrays.copyOf(isMap, depth << 1);
+            keyWritten = Arrays.copyOf(keyWritten, depth << 1);
+        }
+        remaining[depth] = size;
+        isMap[depth] = map;
+        keyWritten[depth] = false;
+        depth++;
+        return this;
+    }
+
+    private void checkOpen() {
+        if (completed)
+            throw new IllegalStateException("The value has already been written");
+    }
+
+    // an array element or map value may come next
+    private void checkValue() {
+        checkOpen();
+        if (depth > 0) {
+            int i = depth - 1;
+            if (isMap[i] && !keyWritten[i])
+                throw new IllegalStateException("Expecting a key");
+            if (!isMap[i])
+                element();
+        }
+    }
+
+    // counts an array element or map entry against the declared size
+    private void element() {
+        int i = depth - 1;
+        if (remaining[i] == 0)
+            throw new IllegalStateException((isMap[i] ? "Map" : "Array") + " is already full");
+        if (remaining[i] > 0)
+            remaining[i]--;
+    }
+
+    private void valueWritten() {
+        keyWritten[depth - 1] = false;
+    }
+
+    // the emitter failed part way through the value, which can't be
+    // finished now; release the owner for the next one
+    private RuntimeException abort(Throwable e) {
+        completed = true;
+        owner.aborted();
+        return new RuntimeException(e);
+    }
+
+    private void complete() throws Exception {
+        completed = true;
+        owner.completed();
+    }
+}
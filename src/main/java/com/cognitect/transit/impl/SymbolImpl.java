@@ -8,29 +8,36 @@ import com.cognitect.transit.Symbol;
 
 public class SymbolImpl implements Symbol, Comparable<Symbol>, Named {
 
+    private static final Interner<SymbolImpl> interner = new Interner<SymbolImpl>(SymbolImpl::new);
+
     final String ns;
     final String name;
-    String _str;
+    final String _str;
+    final int _hash;
 
     public SymbolImpl(String nsname) {
         int i = nsname.indexOf('/');
         if(i == -1 || nsname.equals("/")) {
             ns = null;
-            name = nsname.intern();
+            name = nsname;
         } else {
             ns = nsname.substring(0, i);
             name = nsname.substring(i + 1);
         }
+        _str = nsname;
+        _hash = 19 * _str.hashCode();
+    }
+
+    /**
+     * @return the canonical symbol for nsname, so that symbols read or
+     * made many times are shared and compare by identity
+     */
+    public static SymbolImpl intern(String nsname) {
+        return interner.intern(nsname);
     }
 
     @Override
     public String toString() {
-        if(_str == null){
-            if(ns != null)
-                _str = (ns + "/" + name).intern();
-            else
-                _str = name;
-        }
         return _str;
     }
 
@@ -60,7 +67,7 @@ public class SymbolImpl implements Symbol, Comparable<Symbol>, Named {
 
     @Override
     public int hashCode() {
-        return 19 * getValue().hashCode();
+        return _hash;
     }
 
     @Override
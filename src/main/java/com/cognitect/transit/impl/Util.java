@@ -4,6 +4,7 @@ import java.lang.reflect.Array;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Created by fogus on 4/2/14.
@@ -63,4 +64,76 @@ public class Util {
 	    else
 	        throw new UnsupportedOperationException("mapSize not supported on this type " + m.getClass().getSimpleName());
 	}
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	// digit values by character, -1 if not a hex digit
+	private static final byte[] HEX_VALUES = new byte[128];
+
+	static {
+		java.util.Arrays.fill(HEX_VALUES, (byte) -1);
+		for (int i = 0; i < 16; i++) {
+			HEX_VALUES["0123456789abcdef".charAt(i)] = (byte) i;
+			HEX_VALUES["0123456789ABCDEF".charAt(i)] = (byte) i;
+		}
+	}
+
+	/**
+	 * @return prefix followed by the canonical form of u, built in a single
+	 * char array
+	 */
+	static String uuidString(String prefix, UUID u) {
+		int p = prefix.length();
+		char[] c = new char[p + 36];
+		prefix.getChars(0, p, c, 0);
+		long msb = u.getMostSignificantBits();
+		long lsb = u.getLeastSignificantBits();
+		hex(c, p, msb >>> 32, 8);
+		c[p + 8] = '-';
+		hex(c, p + 9, msb >>> 16, 4);
+		c[p + 13] = '-';
+		hex(c, p + 14, msb, 4);
+		c[p + 18] = '-';
+		hex(c, p + 19, lsb >>> 48, 4);
+		c[p + 23] = '-';
+		hex(c, p + 24, lsb, 12);
+		return new String(c);
+	}
+
+	private static void hex(char[] c, int offset, long v, int digits) {
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			c[i] = HEX_DIGITS[(int) v & 0xf];
+			v >>>= 4;
+		}
+	}
+
+	/**
+	 * @return the UUID in canonical form in chars[offset, offset + length),
+	 * or null if it isn't in canonical form
+	 */
+	static UUID parseUUID(char[] chars, int offset, int length) {
+		if (length != 36 || chars[offset + 8] != '-' || chars[offset + 13] != '-' ||
+				chars[offset + 18] != '-' || chars[offset + 23] != '-')
+			return null;
+		long a = hex(chars, offset, 8);
+		long b = hex(chars, offset + 9, 4);
+		long c = hex(chars, offset + 14, 4);
+		long d = hex(chars, offset + 19, 4);
+		long e = hex(chars, offset + 24, 12);
+		if ((a | b | c | d | e) < 0)
+			return null;
+		return new UUID((a << 32) | (b << 16) | c, (d << 48) | e);
+	}
+
+	// at most 12 digits, so -1 can't be a value
+	private static long hex(char[] chars, int offset, int digits) {
+		long v = 0;
+		for (int i = offset; i < offset + digits; i++) {
+			char c = chars[i];
+			int d = (c < 128) ? HEX_VALUES[c] : -1;
+			if (d < 0)
+				return -1;
+			v = (v << 4) | d;
+		}
+		return v;
+	}
 }
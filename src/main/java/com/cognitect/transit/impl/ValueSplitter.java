@@ -0,0 +1,352 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.TransitFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Cuts a stream of concatenated top-level values into chunks of whole
+ * values without decoding them, by scanning just enough of the encoding
+ * to find where each value ends. Every chunk can then be read on its own,
+ * since the read cache is reset for each top-level value anyway.
+ *
+ * The cache markers the writer puts between values are looked at, too:
+ * once a session reset marker is seen values share the cache, so chunks
+ * are only cut before the next reset marker; a clock marker is repeated
+ * at the start of every later chunk.
+ */
+public abstract class ValueSplitter {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final int chunkSize;
+    private byte[] buf;
+    private int start;
+    private int limit;
+    private boolean eof;
+    // cuts are only made before a reset marker
+    private boolean session;
+    // the clock marker, once seen, and what goes before the next chunk
+    private byte[] clock;
+    private byte[] prefix;
+
+    protected ValueSplitter(InputStream in, int chunkSize) {
+        this.in = in;
+        this.chunkSize = chunkSize;
+        this.buf = new byte[Math.max(INITIAL_BUFFER_SIZE, chunkSize)];
+    }
+
+    public static ValueSplitter create(TransitFactory.Format format, InputStream in, int chunkSize) {
+        switch (format) {
+            case JSON:
+            case JSON_VERBOSE:
+                return new Json(in, chunkSize);
+            case MSGPACK:
+            case MSGPACK_CORE:
+                return new Msgpack(in, chunkSize);
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    /**
+     * Finds the end of the value starting at or after from. After
+     * INCOMPLETE, the next call is for the same value with more bytes
+     * (though the value may have moved in the buffer), so implementations
+     * keep their place rather than scan it again.
+     * @return the offset just past the value, NONE if there are only
+     * separators up to limit, or INCOMPLETE if the value runs past limit
+     */
+    protected abstract int valueEnd(byte[] b, int from, int limit, boolean eof) throws IOException;
+
+    /**
+     * @return the character of the cache marker that the value from from
+     * to end is (after any separators), or 0 if it is not a marker
+     */
+    protected abstract int marker(byte[] b, int from, int end);
+
+    protected static final int NONE = -1;
+    protected static final int INCOMPLETE = -2;
+
+    private static boolean isMarker(int c) {
+        return c == Constants.CACHE_RESET.charAt(1) || c == Constants.CACHE_CLOCK.charAt(1);
+    }
+
+    /**
+     * Returns the next chunk of at least chunkSize bytes (unless at the
+     * end of the stream) made of whole values, or null at the end
+     */
+    public byte[] nextChunk() throws IOException {
+        int pos = start;
+        // where the chunk may end, which a marker stays in front of
+        int cut = start;
+        boolean values = false;
+        while (true) {
+            int end = valueEnd(buf, pos, limit, eof);
+            if (end >= 0) {
+                int m = marker(buf, pos, end);
+                if (m == Constants.CACHE_CLOCK.charAt(1)) {
+                    clock = Arrays.copyOfRange(buf, pos, end);
+                } else if (m == Constants.CACHE_RESET.charAt(1)) {
+                    session = true;
+                    if (values)
+                        cut = pos;
+                } else {
+                    values = true;
+                    if (!session)
+                        cut = end;
+                }
+                pos = end;
+                if (cut - start >= chunkSize)
+                    return take(cut);
+            } else if (end == NONE && eof) {
+                return (pos > start) ? take(pos) : null;
+            } else if (eof) {
+                throw new IOException("Truncated value at the end of the stream");
+            } else {
+                pos -= start;
+                cut -= start;
+                fill();
+                pos += start;
+                cut += start;
+            }
+        }
+    }
+
+    private byte[] take(int end) {
+        byte[] chunk;
+        if (prefix == null) {
+            chunk = Arrays.copyOfRange(buf, start, end);
+        } else {
+            chunk = new byte[prefix.length + end - start];
+            System.arraycopy(prefix, 0, chunk, 0, prefix.length);
+            System.arraycopy(buf, start, chunk, prefix.length, end - start);
+        }
+        prefix = clock;
+        start = end;
+        return chunk;
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            limit -= start;
+            start = 0;
+        } else if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length << 1);
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0)
+            eof = true;
+        else
+            limit += n;
+    }
+
+    /**
+     * Values separated by optional whitespace, as written by a JSON writer
+     * or found in newline-delimited files
+     */
+    static class Json extends ValueSplitter {
+
+        // where the scan of an incomplete value got to, relative to from
+        private int scanned;
+        private boolean started;
+        private boolean bare;
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        Json(InputStream in, int chunkSize) {
+            super(in, chunkSize);
+        }
+
+        private static boolean isSpace(byte c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private static boolean isDelimiter(byte c) {
+            return isSpace(c) || c == '[' || c == '{' || c == '"';
+        }
+
+        @Override
+        protected int valueEnd(byte[] b, int from, int limit, boolean eof) {
+            int i = from + scanned;
+            if (!started) {
+                while (i < limit && isSpace(b[i]))
+                    i++;
+                if (i == limit)
+                    return NONE;
+                byte c = b[i];
+                started = true;
+                bare = c != '[' && c != '{' && c != '"';
+                depth = 0;
+                inString = false;
+                escaped = false;
+            }
+
+            if (bare) {
+                // a bare number or literal ends at the next delimiter
+                while (i < limit && !isDelimiter(b[i]))
+                    i++;
+                return (i < limit || eof) ? end(i) : incomplete(from, i);
+            }
+
+            // multi-byte UTF-8 sequences never contain ASCII bytes, so
+            // brackets and quotes can be matched bytewise
+            for (; i < limit; i++) {
+                byte c = b[i];
+                if (escaped) {
+                    escaped = false;
+                } else if (inString) {
+                    if (c == '\\')
+                        escaped = true;
+                    else if (c == '"') {
+                        inString = false;
+                        if (depth == 0)
+                            return end(i + 1);
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '[' || c == '{') {
+                    depth++;
+                } else if (c == ']' || c == '}') {
+                    if (--depth == 0)
+                        return end(i + 1);
+                }
+            }
+            return incomplete(from, i);
+        }
+
+        @Override
+        protected int marker(byte[] b, int from, int end) {
+            int i = from;
+            while (i < end && isSpace(b[i]))
+                i++;
+            if (end - i == 4 && b[i] == '"' && b[i + 1] == Constants.SUB && b[i + 3] == '"' && isMarker(b[i + 2]))
+                return b[i + 2];
+            return 0;
+        }
+
+        private int end(int i) {
+            started = false;
+            scanned = 0;
+            return i;
+        }
+
+        private int incomplete(int from, int i) {
+            scanned = i - from;
+            return INCOMPLETE;
+        }
+    }
+
+    /**
+     * Values back to back, as written by a msgpack writer
+     */
+    static class Msgpack extends ValueSplitter {
+
+        // where the scan of an incomplete value got to, relative to
+        // from, and the values still to be scanned from there
+        private int scanned;
+        private long pending;
+
+        Msgpack(InputStream in, int chunkSize) {
+            super(in, chunkSize);
+        }
+
+        @Override
+        protected int valueEnd(byte[] b, int from, int limit, boolean eof) throws IOException {
+            if (pending == 0) {
+                if (from == limit)
+                    return NONE;
+                pending = 1;
+                scanned = 0;
+            }
+            int i = from + scanned;
+            while (pending > 0) {
+                if (i >= limit)
+                    return incomplete(from, i);
+                int h = b[i] & 0xff;
+                long size; // header and payload
+                long children = 0;
+                if (h <= 0x7f || h >= 0xe0 || h == 0xc0 || h == 0xc2 || h == 0xc3) {
+                    size = 1;
+                } else if (h <= 0x8f) {
+                    size = 1;
+                    children = 2L * (h & 0x0f);
+                } else if (h <= 0x9f) {
+                    size = 1;
+                    children = h & 0x0f;
+                } else if (h <= 0xbf) {
+                    size = 1 + (h & 0x1f);
+                } else {
+                    int n = headerLength(h);
+                    if (i + n > limit)
+                        return incomplete(from, i);
+                    switch (h) {
+                        case 0xc4: case 0xd9: size = 2 + length(b, i + 1, 1); break;
+                        case 0xc5: case 0xda: size = 3 + length(b, i + 1, 2); break;
+                        case 0xc6: case 0xdb: size = 5 + length(b, i + 1, 4); break;
+                        case 0xc7: size = 3 + length(b, i + 1, 1); break;
+                        case 0xc8: size = 4 + length(b, i + 1, 2); break;
+                        case 0xc9: size = 6 + length(b, i + 1, 4); break;
+                        case 0xd4: size = 3; break;
+                        case 0xd5: size = 4; break;
+                        case 0xd6: size = 6; break;
+                        case 0xd7: size = 10; break;
+                        case 0xd8: size = 18; break;
+                        case 0xdc: size = 3; children = length(b, i + 1, 2); break;
+                        case 0xdd: size = 5; children = length(b, i + 1, 4); break;
+                        case 0xde: size = 3; children = 2 * length(b, i + 1, 2); break;
+                        case 0xdf: size = 5; children = 2 * length(b, i + 1, 4); break;
+                        default: size = n; break;
+                    }
+                }
+                if (i + size > limit)
+                    return incomplete(from, i);
+                i += (int) size;
+                pending += children - 1;
+            }
+            scanned = 0;
+            return i;
+        }
+
+        private int incomplete(int from, int i) {
+            scanned = i - from;
+            return INCOMPLETE;
+        }
+
+        @Override
+        protected int marker(byte[] b, int from, int end) {
+            // a fixstr of two characters
+            if (end - from == 3 && (b[from] & 0xff) == 0xa2 && b[from + 1] == Constants.SUB && isMarker(b[from + 2]))
+                return b[from + 2];
+            return 0;
+        }
+
+        // bytes needed to know the size of the value
+        private static int headerLength(int h) throws IOException {
+            switch (h) {
+                case 0xc4: case 0xc7: case 0xcc: case 0xd0: case 0xd9: return 2;
+                case 0xc5: case 0xc8: case 0xcd: case 0xd1: case 0xda: case 0xdc: case 0xde: return 3;
+                case 0xca: case 0xce: case 0xd2: return 5;
+                case 0xc6: case 0xc9: case 0xdb: case 0xdd: case 0xdf: return 5;
+                case 0xcb: case 0xcf: case 0xd3: return 9;
+                case 0xd4: case 0xd5: case 0xd6: case 0xd7: case 0xd8: return 1;
+                default: throw new IOException("Invalid msgpack header byte " + h);
+            }
+        }
+
+        private static long length(byte[] b, int off, int n) {
+            long l = 0;
+            for (int k = 0; k < n; k++)
+                l = (l << 8) | (b[off + k] & 0xff);
+            return l;
+        }
+    }
+}
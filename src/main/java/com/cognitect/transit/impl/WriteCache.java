@@ -3,9 +3,17 @@
 
 package com.cognitect.transit.impl;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Write side of the transit cache. Entries live in an open addressing
+ * table keyed by the prefix, tag and rep a string is emitted from, so a
+ * hit never has to build the prefixed string; codes come from a static
+ * table and init() only bumps a generation counter.
+ *
+ * Once all codes are taken the cache starts over, unless it replaces
+ * entries according to a CacheClock.
+ */
 public class WriteCache {
 
     public static final int MIN_SIZE_CACHEABLE = 4;
@@ -13,16 +21,58 @@ public class WriteCache {
     public static final int MAX_CACHE_ENTRIES = CACHE_CODE_DIGITS * CACHE_CODE_DIGITS;
     public static final int BASE_CHAR_IDX = 48;
 
-    private final Map<String, String> cache;
+    // powers of two, the table doubles while more than half full
+    private static final int INITIAL_TABLE_SIZE = 64;
+    private static final int MAX_TABLE_SIZE = 4096;
+
+    private static final String[] CODES = new String[MAX_CACHE_ENTRIES];
+
+    static {
+        for (int i = 0; i < MAX_CACHE_ENTRIES; i++)
+            CODES[i] = indexToCode(i);
+    }
+
+    private String[] prefixes;
+    private String[] tags;
+    private String[] reps;
+    private int[] hashes;
+    private short[] codes;
+    private int[] generations;
+    private int mask;
+    private int generation;
     private int index;
-    private boolean enabled;
+    private final boolean enabled;
+    private final CacheClock clock;
+    // table slots by code, kept to replace entries
+    private final int[] slotsByCode;
 
     public WriteCache() { this(true); }
 
-    public WriteCache(boolean enabled) {
-        index = 0;
-        cache = new HashMap<String, String>(MAX_CACHE_ENTRIES);
+    public WriteCache(boolean enabled) { this(enabled, false); }
+
+    /**
+     * @param clock whether to replace entries according to a CacheClock
+     *              once all codes are taken, rather than start over
+     */
+    public WriteCache(boolean enabled, boolean clock) {
         this.enabled = enabled;
+        this.clock = (enabled && clock) ? new CacheClock() : null;
+        this.slotsByCode = (this.clock != null) ? new int[MAX_CACHE_ENTRIES] : null;
+        generation = 1;
+        if (enabled)
+            allocate(INITIAL_TABLE_SIZE);
+        index = 0;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return whether entries are replaced according to a CacheClock
+     */
+    public boolean isClock() {
+        return clock != null;
     }
 
     public static boolean isCacheable(String s, boolean asMapKey) {
@@ -32,7 +82,25 @@ public class WriteCache {
                     (s.charAt(1) == ':' || s.charAt(1) == '$' || s.charAt(1) == '#')));
     }
 
-    private String indexToCode(int index) {
+    private static boolean isCacheable(String prefix, String tag, String rep, boolean asMapKey) {
+        if (prefix.length() + tag.length() + rep.length() < MIN_SIZE_CACHEABLE)
+            return false;
+        if (asMapKey)
+            return true;
+        char c = charAt(prefix, tag, rep, 1);
+        return charAt(prefix, tag, rep, 0) == Constants.ESC && (c == ':' || c == '$' || c == '#');
+    }
+
+    private static char charAt(String prefix, String tag, String rep, int i) {
+        if (i < prefix.length())
+            return prefix.charAt(i);
+        i -= prefix.length();
+        if (i < tag.length())
+            return tag.charAt(i);
+        return rep.charAt(i - tag.length());
+    }
+
+    private static String indexToCode(int index) {
         int hi = index / CACHE_CODE_DIGITS;
         int lo = index % CACHE_CODE_DIGITS;
         if (hi == 0) {
@@ -42,25 +110,162 @@ public class WriteCache {
         }
     }
 
-    public String cacheWrite(String s, boolean asMapKey) {
+    // same value String.hashCode would give for prefix + tag + rep
+    private static int hash(String prefix, String tag, String rep) {
+        int h = 0;
+        for (int i = 0; i < prefix.length(); i++)
+            h = 31 * h + prefix.charAt(i);
+        for (int i = 0; i < tag.length(); i++)
+            h = 31 * h + tag.charAt(i);
+        if (h == 0)
+            return rep.hashCode();
+        for (int i = 0; i < rep.length(); i++)
+            h = 31 * h + rep.charAt(i);
+        return h;
+    }
 
-        if(enabled && isCacheable(s, asMapKey)) {
-            String val = cache.get(s);
-            if(val != null)
-                return val;
-            else {
-                if(index == MAX_CACHE_ENTRIES)
-                    init();
-                String code = indexToCode(index++);
-                cache.put(s, code);
+    private void allocate(int size) {
+        prefixes = new String[size];
+        tags = new String[size];
+        reps = new String[size];
+        hashes = new int[size];
+        codes = new short[size];
+        generations = new int[size];
+        mask = size - 1;
+    }
+
+    private void grow() {
+        String[] oldPrefixes = prefixes, oldTags = tags, oldReps = reps;
+        int[] oldHashes = hashes, oldGenerations = generations;
+        short[] oldCodes = codes;
+        allocate(oldHashes.length << 1);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldGenerations[i] == generation) {
+                int slot = slot(oldHashes[i]);
+                while (generations[slot] == generation)
+                    slot = (slot + 1) & mask;
+                put(slot, oldPrefixes[i], oldTags[i], oldReps[i], oldHashes[i], oldCodes[i]);
             }
         }
-        return s;
+    }
+
+    private void put(int slot, String prefix, String tag, String rep, int h, int code) {
+        generations[slot] = generation;
+        prefixes[slot] = prefix;
+        tags[slot] = tag;
+        reps[slot] = rep;
+        hashes[slot] = h;
+        codes[slot] = (short) code;
+        if (slotsByCode != null)
+            slotsByCode[code] = slot;
+    }
+
+    // empties slot, moving later entries of the same run back so that
+    // lookups still find them
+    private void remove(int slot) {
+        int free = slot;
+        for (int i = (slot + 1) & mask; generations[i] == generation; i = (i + 1) & mask) {
+            // i can move to free unless free lies before its home slot
+            if (((i - slot(hashes[i])) & mask) >= ((i - free) & mask)) {
+                put(free, prefixes[i], tags[i], reps[i], hashes[i], codes[i]);
+                free = i;
+            }
+        }
+        generations[free] = 0;
+        prefixes[free] = null;
+        tags[free] = null;
+        reps[free] = null;
+    }
+
+    private void replace(String prefix, String tag, String rep, int h) {
+        int code = clock.replace(h);
+        if (code < 0)
+            return;
+        remove(slotsByCode[code]);
+        int slot = slot(h);
+        while (generations[slot] == generation)
+            slot = (slot + 1) & mask;
+        put(slot, prefix, tag, rep, h, code);
+    }
+
+    private int slot(int h) {
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private boolean matches(int slot, String prefix, String tag, String rep) {
+        String p = prefixes[slot], t = tags[slot], r = reps[slot];
+        if (p == prefix && t == tag && r == rep)
+            return true;
+        int len = prefix.length() + tag.length() + rep.length();
+        if (p.length() + t.length() + r.length() != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (charAt(p, t, r, i) != charAt(prefix, tag, rep, i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the string made of prefix, tag and rep without building it.
+     * Returns the cache code if it was written before, or null if it has to
+     * be written out in full (remembering it if it is cacheable).
+     */
+    public String cacheWrite(String prefix, String tag, String rep, boolean asMapKey) {
+        if (!enabled)
+            return null;
+        if (prefix == null)
+            prefix = "";
+        if (tag == null)
+            tag = "";
+        if (!isCacheable(prefix, tag, rep, asMapKey))
+            return null;
+
+        int h = hash(prefix, tag, rep);
+        int slot = slot(h);
+        while (generations[slot] == generation) {
+            if (hashes[slot] == h && matches(slot, prefix, tag, rep)) {
+                if (clock != null)
+                    clock.use(codes[slot]);
+                return CODES[codes[slot]];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (index == MAX_CACHE_ENTRIES) {
+            if (clock != null) {
+                replace(prefix, tag, rep, h);
+                return null;
+            }
+            init();
+            slot = slot(h);
+        } else if (index >= (hashes.length >> 1) && hashes.length < MAX_TABLE_SIZE) {
+            grow();
+            slot = slot(h);
+            while (generations[slot] == generation)
+                slot = (slot + 1) & mask;
+        }
+        put(slot, prefix, tag, rep, h, index++);
+        return null;
+    }
+
+    public String cacheWrite(String s, boolean asMapKey) {
+        String code = cacheWrite(null, null, s, asMapKey);
+        return code != null ? code : s;
     }
 
 	public WriteCache init(){
+		if (clock != null)
+			clock.clear(index);
 		index = 0;
-		cache.clear();
+		if (enabled && ++generation == 0) {
+			// counter wrapped, stale slots could look live again
+			Arrays.fill(generations, 0);
+			Arrays.fill(prefixes, null);
+			Arrays.fill(tags, null);
+			Arrays.fill(reps, null);
+			generation = 1;
+		}
 		return this;
 	}
 }
@@ -19,6 +19,7 @@ import com.cognitect.transit.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 public class WriteHandlerMap implements TagProvider, Map<Class, WriteHandler<?, ?>> {
@@ -46,7 +47,7 @@ public class WriteHandlerMap implements TagProvider, Map<Class, WriteHandler<?,
         handlers.put(Keyword.class, new WriteHandlers.KeywordWriteHandler());
         handlers.put(Symbol.class, new WriteHandlers.ToStringWriteHandler("$"));
         handlers.put(byte[].class, new WriteHandlers.BinaryWriteHandler());
-        handlers.put(UUID.class, new WriteHandlers.UUIDWriteHandler());
+        handlers.put(java.util.UUID.class, new WriteHandlers.UUIDWriteHandler());
         handlers.put(java.net.URI.class, uriHandler);
         handlers.put(com.cognitect.transit.URI.class, uriHandler);
         handlers.put(List.class, new WriteHandlers.ListWriteHandler());
@@ -58,8 +59,13 @@ public class WriteHandlerMap implements TagProvider, Map<Class, WriteHandler<?,
         handlers.put(short[].class, arrayHandler);
         handlers.put(boolean[].class, arrayHandler);
         handlers.put(char[].class, arrayHandler);
+        handlers.put(WriteHandlers.TypedArrayRep.class, arrayHandler);
         handlers.put(Set.class, new WriteHandlers.SetWriteHandler());
         handlers.put(Date.class, new WriteHandlers.TimeWriteHandler());
+        WriteHandler javaTimeHandler = new WriteHandlers.JavaTimeWriteHandler();
+        handlers.put(java.time.Instant.class, javaTimeHandler);
+        handlers.put(java.time.ZonedDateTime.class, javaTimeHandler);
+        handlers.put(java.time.LocalDate.class, javaTimeHandler);
         handlers.put(Ratio.class, new WriteHandlers.RatioWriteHandler());
         handlers.put(LinkImpl.class, new WriteHandlers.LinkWriteHandler());
         handlers.put(Quote.class, new WriteHandlers.QuoteAbstractEmitter());
@@ -70,7 +76,35 @@ public class WriteHandlerMap implements TagProvider, Map<Class, WriteHandler<?,
 
     public final static Map<Class, WriteHandler<?, ?>> defaults = defaultHandlers();
 
+    // ids of the ground types the emitter writes without calling tag and
+    // rep, given only while their handler is the default one
+    static final int OTHER = 0;
+    static final int STRING = 1;
+    static final int LONG = 2;
+    static final int INTEGER = 3;
+    static final int DOUBLE = 4;
+    static final int BOOLEAN = 5;
+    static final int KEYWORD = 6;
+    static final int UUID = 7;
+
+    /**
+     * The handler resolved for a concrete class, and its ground type id
+     */
+    static final class Resolved {
+        final WriteHandler<Object, Object> handler;
+        final int type;
+
+        Resolved(WriteHandler<?, ?> handler, int type) {
+            this.handler = (WriteHandler<Object, Object>) handler;
+            this.type = type;
+        }
+    }
+
     private final Map<Class, WriteHandler<?, ?>> handlers;
+    // handlers resolved for concrete classes, including by base class or
+    // interface; handlers itself is never modified after construction
+    private final ConcurrentHashMap<Class, Resolved> resolved = new ConcurrentHashMap<Class, Resolved>();
+    private final Resolved nil;
     private WriteHandlerMap verboseHandlerMap;
     Function<Object, Object> transform = null;
 
@@ -89,6 +123,7 @@ public class WriteHandlerMap implements TagProvider, Map<Class, WriteHandler<?,
             }
         }
         handlers.put(Map.class, new WriteHandlers.MapWriteHandler());
+        nil = new Resolved(handlers.get(null), OTHER);
         setTagProvider(handlers);
     }
 
@@ -189,44 +224,72 @@ public class WriteHandlerMap implements TagProvider, Map<Class, WriteHandler<?,
     }
 
     public WriteHandler<Object,Object> getHandler(Object o) {
-        Class c = (o != null) ? o.getClass() : null;
-        WriteHandler<?, ?> h = null;
+        return lookup(o).handler;
+    }
+
+    Resolved lookup(Object o) {
+        if (o == null)
+            return nil;
+
+        Class c = o.getClass();
+        Resolved r = resolved.get(c);
+        if (r == null) {
+            r = resolve(c);
+            resolved.putIfAbsent(c, r);
+        }
+        return r;
+    }
 
-        if(h == null) h = handlers.get(c);
+    private Resolved resolve(Class c) {
+        WriteHandler<?, ?> h = handlers.get(c);
         if(h == null) h = checkBaseClasses(c);
         if(h == null) h = checkBaseInterfaces(c);
 
-        return (WriteHandler<Object, Object>) h;
+        return new Resolved(h, groundType(c, h));
+    }
+
+    private static int groundType(Class c, WriteHandler<?, ?> h) {
+        if (c == String.class && h == defaults.get(String.class))
+            return STRING;
+        if (c == Long.class && h == defaults.get(Long.class))
+            return LONG;
+        if (c == Integer.class && h == defaults.get(Integer.class))
+            return INTEGER;
+        if (c == Double.class && h == defaults.get(Double.class))
+            return DOUBLE;
+        if (c == Boolean.class && h == defaults.get(Boolean.class))
+            return BOOLEAN;
+        if (c == KeywordImpl.class && h == defaults.get(Keyword.class))
+            return KEYWORD;
+        if (c == java.util.UUID.class && h == defaults.get(java.util.UUID.class))
+            return UUID;
+        return OTHER;
     }
 
     private WriteHandler<?,?> checkBaseClasses(Class c) {
-        for(Class base = c.getSuperclass(); base != Object.class; base = base.getSuperclass()) {
+        for(Class base = c.getSuperclass(); base != null && base != Object.class; base = base.getSuperclass()) {
             WriteHandler<?, ?> h = handlers.get(base);
-            if(h != null) {
-                handlers.put(c, h);
+            if(h != null)
                 return h;
-            }
         }
         return null;
     }
 
     private WriteHandler<?,?> checkBaseInterfaces(Class c) {
-        Map<Class, WriteHandler<?,?>> possibles = new HashMap<Class,WriteHandler<?,?>>();
-        for (Class base = c; base != Object.class; base = base.getSuperclass()) {
+        WriteHandler<?, ?> match = null;
+        Class matchItf = null;
+        for (Class base = c; base != null && base != Object.class; base = base.getSuperclass()) {
             for (Class itf : base.getInterfaces()) {
                 WriteHandler<?, ?> h = handlers.get(itf);
-                if (h != null) possibles.put(itf, h);
-            }
-        }
-        switch (possibles.size()) {
-            case 0: return null;
-            case 1: {
-                WriteHandler<?, ?> h = possibles.values().iterator().next();
-                handlers.put(c, h);
-                return h;
+                if (h != null && itf != matchItf) {
+                    if (match != null)
+                        throw new RuntimeException("More than one match for " + c);
+                    match = h;
+                    matchItf = itf;
+                }
             }
-            default: throw new RuntimeException("More than one match for " + c);
         }
+        return match;
     }
 
     @Override
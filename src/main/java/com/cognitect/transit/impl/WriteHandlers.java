@@ -6,6 +6,9 @@ package com.cognitect.transit.impl;
 import com.cognitect.transit.*;
 
 import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.*;
 
 public class WriteHandlers {
@@ -21,7 +24,50 @@ public class WriteHandlers {
 
         @Override
         public Object rep(Object o) {
-            return o;
+            return (o instanceof TypedArrayRep) ? ((TypedArrayRep) o).array : o;
+        }
+    }
+
+    /**
+     * The representation of a tagged primitive array, written as a plain
+     * array; wrapped so that it isn't looked up by its class again
+     */
+    public static final class TypedArrayRep {
+        final Object array;
+
+        TypedArrayRep(Object array) {
+            this.array = array;
+        }
+    }
+
+    /**
+     * Writes primitive arrays tagged with their element type, so that
+     * they can be read back into primitive arrays
+     */
+    public static class TypedArrayWriteHandler extends AbstractWriteHandler<Object, Object> {
+
+        public static final Map<Class, WriteHandler<?, ?>> HANDLERS;
+        static {
+            Map<Class, WriteHandler<?, ?>> handlers = new HashMap<Class, WriteHandler<?, ?>>();
+            handlers.put(long[].class, new TypedArrayWriteHandler("longs"));
+            handlers.put(double[].class, new TypedArrayWriteHandler("doubles"));
+            HANDLERS = Collections.unmodifiableMap(handlers);
+        }
+
+        private final String tag;
+
+        public TypedArrayWriteHandler(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public String tag(Object ignored) {
+            return tag;
+        }
+
+        @Override
+        public Object rep(Object o) {
+            return new TypedArrayRep(o);
         }
     }
 
@@ -99,23 +145,26 @@ public class WriteHandlers {
             this.tagProvider = tagProvider;
         }
 
-        private boolean stringableKeys(Map<Object, Object> m) {
+        public boolean stringableKeys(Map<Object, Object> m) {
 
             Iterator<Object> i = m.keySet().iterator();
             while(i.hasNext()) {
-                Object key = i.next();
-                String tag = tagProvider.getTagAfterPossibleTransform(key);
-
-                if(tag != null && tag.length() > 1)
+                if(!stringableKey(tagProvider, i.next()))
                     return false;
-                else if (tag == null && !(key instanceof String)) {
-                    return false;
-                }
             }
 
             return true;
         }
 
+        public static boolean stringableKey(TagProvider tagProvider, Object key) {
+
+            String tag = tagProvider.getTagAfterPossibleTransform(key);
+            if(tag != null)
+                return tag.length() <= 1;
+            else
+                return key instanceof String;
+        }
+
         @Override
         public String tag(Map<Object, Object> o) {
 
@@ -320,7 +369,7 @@ public class WriteHandlers {
                 }
 
                 @Override
-                public String rep(Date o) { return AbstractParser.getDateTimeFormat().format(o); }
+                public String rep(Date o) { return Iso8601.format(o.getTime()); }
 
                 @Override
                 public String stringRep(Date o) {
@@ -336,6 +385,62 @@ public class WriteHandlers {
         }
     }
 
+    /**
+     * Writes Instant, ZonedDateTime and LocalDate (at midnight UTC) as
+     * milliseconds since the epoch, like Date
+     */
+    public static class JavaTimeWriteHandler implements WriteHandler<Object, Object> {
+
+        static long millis(Object o) {
+            if (o instanceof Instant)
+                return ((Instant) o).toEpochMilli();
+            else if (o instanceof ZonedDateTime)
+                return ((ZonedDateTime) o).toInstant().toEpochMilli();
+            else if (o instanceof LocalDate)
+                return ((LocalDate) o).toEpochDay() * 86400000L;
+            else
+                throw new IllegalArgumentException("Unknown time type: " + o.getClass());
+        }
+
+        @Override
+        public String tag(Object ignored) {
+            return "m";
+        }
+
+        @Override
+        public Object rep(Object o) { return millis(o); }
+
+        @Override
+        public String stringRep(Object o) {
+            return String.valueOf(millis(o));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public WriteHandler<Object, String> getVerboseHandler() {
+            return new WriteHandler<Object, String>() {
+                @Override
+                public String tag(Object ignored) {
+                    return "t";
+                }
+
+                @Override
+                public String rep(Object o) { return Iso8601.format(millis(o)); }
+
+                @Override
+                public String stringRep(Object o) {
+                    return rep(o);
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public WriteHandler<Object, String> getVerboseHandler() {
+                    return this;
+                }
+            };
+        }
+    }
+
     public static class ToStringWriteHandler extends AbstractWriteHandler<Object, Object> {
 
         private final String t;
@@ -3,20 +3,29 @@
 
 package com.cognitect.transit.impl;
 
+import com.cognitect.transit.CachePolicy;
+import com.cognitect.transit.FlushPolicy;
+import com.cognitect.transit.StreamWriter;
 import com.cognitect.transit.WriteHandler;
 import com.cognitect.transit.Writer;
+import com.cognitect.transit.WriterOptions;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import org.msgpack.MessagePack;
+import org.msgpack.core.MessagePacker;
 import org.msgpack.packer.Packer;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
 public class WriterFactory {
 
+    static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final MessagePack MSGPACK = new MessagePack();
+
     private static final Map<Map<Class, WriteHandler<?,?>>, WriteHandlerMap> handlerCache = new Cache<Map<Class, WriteHandler<?,?>>, WriteHandlerMap>();
 
     private static WriteHandlerMap buildWriteHandlerMap(Map<Class, WriteHandler<?, ?>> customHandlers) {
@@ -43,29 +52,15 @@ public class WriterFactory {
     }
 
     public static <T> Writer<T> getJsonInstance(final OutputStream out, Map<Class, WriteHandler<?,?>> customHandlers,  WriteHandler<?, ?> defaultWriteHandler, boolean verboseMode, Function<Object,Object> transform) throws IOException {
+        return getJsonInstance(out, options(customHandlers, defaultWriteHandler, transform), verboseMode);
+    }
 
-        JsonGenerator gen = new JsonFactory().createGenerator(out);
-        final JsonEmitter emitter;
-
-        if (verboseMode) {
-            emitter = new JsonVerboseEmitter(gen, verboseHandlerMap(customHandlers), defaultWriteHandler, transform);
-        } else {
-            emitter = new JsonEmitter(gen, buildWriteHandlerMap(customHandlers), defaultWriteHandler, transform);
-        }
+    public static <T> Writer<T> getJsonInstance(final OutputStream out, WriterOptions options, boolean verboseMode) throws IOException {
 
-        final WriteCache writeCache = new WriteCache(!verboseMode);
+        OutputBuffer buffer = outputBuffer(out, options.getFlushPolicy());
+        Emitter emitter = jsonEmitter(JSON_FACTORY.createGenerator(buffer), options, verboseMode);
 
-        return new Writer<T>() {
-            @Override
-            public void write(T o) {
-                try {
-                    emitter.emit(o, false, writeCache.init());
-                    out.flush();
-                } catch (Throwable e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        };
+        return new WriterImpl<T>(emitter, writeCache(!verboseMode, options), buffer, options);
     }
 
     public static <T> Writer<T> getMsgpackInstance(final OutputStream out, Map<Class, WriteHandler<?,?>> customHandlers, WriteHandler<?, ?> defaultWriteHandler) throws IOException {
@@ -73,24 +68,187 @@ public class WriterFactory {
     }
 
     public static <T> Writer<T> getMsgpackInstance(final OutputStream out, Map<Class, WriteHandler<?,?>> customHandlers, WriteHandler<?, ?> defaultWriteHandler, Function<Object,Object> transform) throws IOException {
+        return getMsgpackInstance(out, options(customHandlers, defaultWriteHandler, transform));
+    }
 
-        Packer packer = new MessagePack().createPacker(out);
+    public static <T> Writer<T> getMsgpackInstance(final OutputStream out, WriterOptions options) throws IOException {
 
-        final MsgpackEmitter emitter = new MsgpackEmitter(packer, buildWriteHandlerMap(customHandlers), defaultWriteHandler, transform);
+        OutputBuffer buffer = outputBuffer(out, options.getFlushPolicy());
+        Emitter emitter = msgpackEmitter(buffer, options);
 
-        final WriteCache writeCache = new WriteCache(true);
+        return new WriterImpl<T>(emitter, writeCache(true, options), buffer, options);
+    }
 
-        return new Writer<T>() {
-            @Override
-            public void write(T o) {
-                try {
-                    emitter.emit(o, false, writeCache.init());
-                    out.flush();
-                } catch (Throwable e) {
-                    throw new RuntimeException(e);
-                }
+    public static <T> Writer<T> getMsgpackCoreInstance(final OutputStream out, WriterOptions options) throws IOException {
+
+        OutputBuffer buffer = outputBuffer(out, options.getFlushPolicy());
+        Emitter emitter = msgpackCoreEmitter(buffer, options);
+
+        return new WriterImpl<T>(emitter, writeCache(true, options), buffer, options);
+    }
+
+    private static WriteCache writeCache(boolean enabled, WriterOptions options) {
+        return new WriteCache(enabled, options.getCachePolicy() == CachePolicy.CLOCK);
+    }
+
+    static Emitter jsonEmitter(JsonGenerator gen, WriterOptions options, boolean verboseMode) {
+        // the buffer decides when the stream gets flushed
+        gen.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+        if (verboseMode)
+            return new JsonVerboseEmitter(gen, verboseHandlerMap(handlers(options)), options.getDefaultWriteHandler(), options.getTransform());
+        else
+            return new JsonEmitter(gen, buildWriteHandlerMap(handlers(options)), options.getDefaultWriteHandler(), options.getTransform());
+    }
+
+    static Emitter msgpackEmitter(OutputStream out, WriterOptions options) {
+        Packer packer = options.isNativeBinary() ? new MsgpackBinPacker(MSGPACK, out) : MSGPACK.createPacker(out);
+        return new MsgpackEmitter(packer, buildWriteHandlerMap(handlers(options)), options.getDefaultWriteHandler(), options.getTransform());
+    }
+
+    static Emitter msgpackCoreEmitter(OutputStream out, WriterOptions options) {
+        // no str8, which the 0.6 engine (and msgpack readers of its time)
+        // can't read, so that both engines write the same bytes
+        MessagePacker packer = new org.msgpack.core.MessagePack.PackerConfig()
+                .withStr8FormatSupport(false)
+                .newPacker(new MsgpackCoreEmitter.StreamOutput(out));
+        return new MsgpackCoreEmitter(packer, buildWriteHandlerMap(handlers(options)), options.getDefaultWriteHandler(), options.getTransform(), options.isNativeBinary());
+    }
+
+    private static Map<Class, WriteHandler<?, ?>> handlers(WriterOptions options) {
+        if (!options.isTypedArrays())
+            return options.getHandlers();
+        // equal for equal options, so the handler map cache still applies
+        Map<Class, WriteHandler<?, ?>> handlers = new HashMap<Class, WriteHandler<?, ?>>(WriteHandlers.TypedArrayWriteHandler.HANDLERS);
+        if (options.getHandlers() != null) {
+            for (Map.Entry<Class, WriteHandler<?, ?>> e : options.getHandlers().entrySet()) {
+                // a WriteHandlerMap holds the default array handler, too
+                if (e.getValue() != WriteHandlerMap.defaults.get(e.getKey()))
+                    handlers.put(e.getKey(), e.getValue());
             }
-        };
+        }
+        return handlers;
+    }
+
+    private static WriterOptions options(Map<Class, WriteHandler<?,?>> customHandlers, WriteHandler<?, ?> defaultWriteHandler, Function<Object,Object> transform) {
+        return new WriterOptions()
+                .withHandlers(customHandlers)
+                .withDefaultWriteHandler(defaultWriteHandler)
+                .withTransform(transform);
+    }
+
+    static OutputBuffer outputBuffer(OutputStream out, FlushPolicy flushPolicy) {
+        return new OutputBuffer(out, flushPolicy.getBufferSize(), flushPolicy.flushesWhenFull());
+    }
+
+    private static class WriterImpl<T> implements Writer<T>, StreamWriterImpl.Owner {
+
+        private final Emitter emitter;
+        private final WriteCache writeCache;
+        private final OutputBuffer buffer;
+        private final boolean flushEachWrite;
+        private final boolean sessionCache;
+        private final int resetInterval;
+        // values written since the last cache reset
+        private int sinceReset;
+        private boolean resetPending = true;
+        private boolean clockPending;
+        private StreamWriterImpl streaming;
+
+        public WriterImpl(Emitter emitter, WriteCache writeCache, OutputBuffer buffer, WriterOptions options) {
+            this.emitter = emitter;
+            this.writeCache = writeCache;
+            this.buffer = buffer;
+            this.flushEachWrite = options.getFlushPolicy().flushesEachWrite();
+            // without a cache, as in verbose mode, there is nothing to keep
+            this.sessionCache = options.isSessionCache() && writeCache.isEnabled();
+            this.resetInterval = options.getCacheResetInterval();
+            this.clockPending = writeCache.isClock();
+        }
+
+        @Override
+        public void write(T o) {
+            checkNotStreaming();
+            try {
+                emitter.emit(o, false, cacheForValue());
+                written();
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void written() throws Exception {
+            // hand whatever the generator holds to the buffer, which
+            // flushes the stream according to the policy
+            emitter.flushWriter();
+            if (flushEachWrite)
+                buffer.flush();
+        }
+
+        private void checkNotStreaming() {
+            if (streaming != null)
+                throw new IllegalStateException("A streamed value is still being written");
+        }
+
+        @Override
+        public StreamWriter stream() {
+            checkNotStreaming();
+            try {
+                streaming = new StreamWriterImpl((AbstractEmitter) emitter, cacheForValue(), this);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+            return streaming;
+        }
+
+        private WriteCache cacheForValue() throws Exception {
+            if (clockPending) {
+                emitMarker(Constants.CACHE_CLOCK);
+                clockPending = false;
+            }
+            if (!sessionCache)
+                return writeCache.init();
+            if (resetPending || sinceReset == resetInterval) {
+                emitMarker(Constants.CACHE_RESET);
+                writeCache.init();
+                resetPending = false;
+                sinceReset = 0;
+            }
+            sinceReset++;
+            return writeCache;
+        }
+
+        private void emitMarker(String marker) throws Exception {
+            // a bare top-level string, which is never a value
+            emitter.emitString(null, null, marker, false, writeCache);
+        }
+
+        @Override
+        public void resetCache() {
+            checkNotStreaming();
+            resetPending = sessionCache;
+        }
+
+        @Override
+        public void completed() throws Exception {
+            streaming = null;
+            written();
+        }
+
+        @Override
+        public void aborted() {
+            streaming = null;
+        }
+
+        @Override
+        public void flush() {
+            try {
+                emitter.flushWriter();
+                buffer.flush();
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     public static WriteHandler defaultDefaultHandler() {
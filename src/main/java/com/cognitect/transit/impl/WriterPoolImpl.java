@@ -0,0 +1,188 @@
+// Copyright (c) Cognitect, Inc.
+// All rights reserved.
+
+package com.cognitect.transit.impl;
+
+import com.cognitect.transit.FlushPolicy;
+import com.cognitect.transit.TransitFactory;
+import com.cognitect.transit.WriterOptions;
+import com.cognitect.transit.WriterPool;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WriterPoolImpl<T> implements WriterPool<T> {
+
+    public static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+    public static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    private static class PooledWriter {
+        final OutputBuffer buffer;
+        final Emitter emitter;
+        final WriteCache cache;
+
+        PooledWriter(OutputBuffer buffer, Emitter emitter, WriteCache cache) {
+            this.buffer = buffer;
+            this.emitter = emitter;
+            this.cache = cache;
+        }
+    }
+
+    private final TransitFactory.Format format;
+    private final WriterOptions options;
+    private final boolean flushStream;
+    private final int maxIdle;
+    private final boolean separated;
+    private final ConcurrentLinkedQueue<PooledWriter> idle = new ConcurrentLinkedQueue<PooledWriter>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public WriterPoolImpl(TransitFactory.Format format, WriterOptions options) {
+        this(format, options, DEFAULT_MAX_IDLE);
+    }
+
+    public WriterPoolImpl(TransitFactory.Format format, WriterOptions options, int maxIdle) {
+        if (format == null)
+            throw new IllegalArgumentException("Unknown Writer type: null");
+        this.format = format;
+        this.options = options;
+        this.flushStream = options.getFlushPolicy() != FlushPolicy.MANUAL;
+        this.maxIdle = maxIdle;
+        this.separated = format == TransitFactory.Format.JSON || format == TransitFactory.Format.JSON_VERBOSE;
+    }
+
+    private PooledWriter create() throws IOException {
+        FlushPolicy policy = options.getFlushPolicy();
+        OutputBuffer buffer = new OutputBuffer(null, policy.getBufferSize(), policy.flushesWhenFull());
+        switch (format) {
+            case MSGPACK:
+                return new PooledWriter(buffer,
+                        WriterFactory.msgpackEmitter(buffer, options),
+                        new WriteCache(true));
+            case MSGPACK_CORE:
+                return new PooledWriter(buffer, WriterFactory.msgpackCoreEmitter(buffer, options), new WriteCache(true));
+            case JSON:
+            case JSON_VERBOSE:
+                boolean verbose = format == TransitFactory.Format.JSON_VERBOSE;
+                JsonGenerator gen = WriterFactory.JSON_FACTORY.createGenerator(buffer);
+                // each write goes to its own stream, so no separator between root values
+                gen.setRootValueSeparator(null);
+                return new PooledWriter(buffer, WriterFactory.jsonEmitter(gen, options, verbose), new WriteCache(!verbose));
+            default:
+                throw new IllegalArgumentException("Unknown Writer type: " + format.toString());
+        }
+    }
+
+    private PooledWriter acquire() throws IOException {
+        PooledWriter w = idle.poll();
+        if (w == null)
+            return create();
+        idleCount.decrementAndGet();
+        return w;
+    }
+
+    private void release(PooledWriter w) {
+        // don't hold on to buffers grown by an exceptionally large value
+        if (w.buffer.array().length > MAX_RETAINED_CAPACITY)
+            return;
+        if (idleCount.incrementAndGet() <= maxIdle)
+            idle.offer(w);
+        else
+            idleCount.decrementAndGet();
+    }
+
+    // a writer that failed part way is never released, its generator may be
+    // in the middle of a value
+
+    private PooledWriter emit(T o) throws Exception {
+        PooledWriter w = acquire();
+        w.buffer.reset();
+        w.emitter.emit(o, false, w.cache.init());
+        w.emitter.flushWriter();
+        return w;
+    }
+
+    @Override
+    public void write(OutputStream out, T o) {
+        try {
+            PooledWriter w = acquire();
+            w.buffer.setSink(out);
+            w.emitter.emit(o, false, w.cache.init());
+            w.emitter.flushWriter();
+            if (flushStream)
+                w.buffer.flush();
+            else
+                w.buffer.drain();
+            w.buffer.setSink(null);
+            release(w);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte[] writeToBytes(T o) {
+        try {
+            PooledWriter w = emit(o);
+            byte[] bytes = Arrays.copyOf(w.buffer.array(), w.buffer.size());
+            release(w);
+            return bytes;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes values back to back to a new byte array, separated the way a
+     * Writer writing them to one stream would separate them
+     */
+    byte[] writeAllToBytes(List<? extends T> values) {
+        try {
+            PooledWriter w = acquire();
+            w.buffer.reset();
+            for (int i = 0; i < values.size(); i++) {
+                if (separated && i > 0)
+                    w.buffer.write(' ');
+                w.emitter.emit(values.get(i), false, w.cache.init());
+                w.emitter.flushWriter();
+            }
+            byte[] bytes = Arrays.copyOf(w.buffer.array(), w.buffer.size());
+            release(w);
+            return bytes;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Whether values written to one stream are separated by a space
+     */
+    boolean separated() {
+        return separated;
+    }
+
+    @Override
+    public int writeTo(ByteBuffer target, T o) {
+        PooledWriter w;
+        try {
+            w = emit(o);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+        int size = w.buffer.size();
+        try {
+            if (size > target.remaining())
+                throw new BufferOverflowException();
+            target.put(w.buffer.array(), 0, size);
+        } finally {
+            release(w);
+        }
+        return size;
+    }
+}
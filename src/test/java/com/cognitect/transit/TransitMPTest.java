@@ -17,6 +17,7 @@ package com.cognitect.transit;
 import com.cognitect.transit.impl.JsonParser;
 import com.cognitect.transit.impl.Tag;
 import com.cognitect.transit.impl.WriteCache;
+import com.cognitect.transit.impl.WriteHandlers;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -25,12 +26,17 @@ import org.msgpack.packer.Packer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URISyntaxException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.*;
 
 public class TransitMPTest extends TestCase {
@@ -471,4 +477,645 @@ public class TransitMPTest extends TestCase {
         assertEquals(Double.NEGATIVE_INFINITY, (Double)r.read());
     }
 
+
+    public void testWriterPool() throws Exception {
+        WriterPool<Object> writers = TransitFactory.writerPool(TransitFactory.Format.MSGPACK);
+        ReaderPool readers = TransitFactory.readerPool(TransitFactory.Format.MSGPACK);
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put(TransitFactory.keyword("foo"), Arrays.asList(TransitFactory.keyword("bar"), 1L, "baz"));
+
+        byte[] first = null;
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writers.write(out, m);
+            if (first == null)
+                first = out.toByteArray();
+            assertTrue(Arrays.equals(first, out.toByteArray()));
+            assertEquals(m, readers.read(new ByteArrayInputStream(out.toByteArray())));
+        }
+
+        assertTrue(Arrays.equals(first, writers.writeToBytes(m)));
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(first.length);
+        assertEquals(first.length, writers.writeTo(direct, m));
+        assertFalse(direct.hasRemaining());
+    }
+
+
+    public void testReadFromBytesAndByteBuffers() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{7, 7});
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.MSGPACK, out);
+        List<Object> first = Arrays.asList(TransitFactory.keyword("foo"), TransitFactory.keyword("foo"), 1L);
+        w.write(first);
+        w.write("bar");
+        byte[] bytes = out.toByteArray();
+
+        Reader r = TransitFactory.reader(TransitFactory.Format.MSGPACK, bytes, 2, bytes.length - 2);
+        assertEquals(first, r.read());
+        assertEquals("bar", r.read());
+        assertNull(r.read(null));
+
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.position(2);
+        r = TransitFactory.reader(TransitFactory.Format.MSGPACK, direct);
+        assertEquals(first, r.read());
+        assertEquals("bar", r.read());
+        assertEquals(2, direct.position());
+    }
+
+
+    public void testWriteReadNativeBinary() throws Exception {
+        int[] sizes = {0, 5, 31, 32, 255, 256, 70000};
+        List<Object> l = new ArrayList<Object>();
+        for (int size : sizes) {
+            byte[] b = new byte[size];
+            for (int i = 0; i < size; i++)
+                b[i] = (byte) i;
+            l.add(b);
+        }
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put("bytes".getBytes(), "binary key");
+        l.add(m);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.MSGPACK, out,
+                new WriterOptions().withNativeBinary(true));
+        w.write(l);
+        byte[] packed = out.toByteArray();
+
+        // array header, then bin8 of length 0 and bin8 of length 5
+        assertEquals((byte) 0x98, packed[0]);
+        assertEquals((byte) 0xc4, packed[1]);
+        assertEquals(0, packed[2]);
+        assertEquals((byte) 0xc4, packed[3]);
+        assertEquals(5, packed[4]);
+
+        List<Object> read = TransitFactory.reader(TransitFactory.Format.MSGPACK, new ByteArrayInputStream(packed)).read();
+        for (int i = 0; i < sizes.length; i++)
+            assertTrue(Arrays.equals((byte[]) l.get(i), (byte[]) read.get(i)));
+        // map keys keep the string form
+        Map.Entry<Object, Object> e = ((Map<Object, Object>) read.get(sizes.length)).entrySet().iterator().next();
+        assertTrue(Arrays.equals("bytes".getBytes(), (byte[]) e.getKey()));
+
+        read = TransitFactory.reader(TransitFactory.Format.MSGPACK, packed).read();
+        assertTrue(Arrays.equals((byte[]) l.get(6), (byte[]) read.get(6)));
+
+        // the string form is still the default
+        out = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.MSGPACK, out).write(l.get(1));
+        assertTrue(new String(out.toByteArray(), "ISO-8859-1").contains("~bAAECAwQ="));
+    }
+
+
+    public void testMsgpackCoreEngine() throws Exception {
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put(TransitFactory.keyword("kw"), TransitFactory.keyword("kw"));
+        m.put("str", Arrays.asList(1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 2.5, true, false, null));
+        m.put(Arrays.asList(1L, 2L), TransitFactory.symbol("cmap-key"));
+        m.put(TransitFactory.keyword("tagged"), TransitFactory.taggedValue("point", Arrays.asList(1L, 2L)));
+        m.put(TransitFactory.keyword("set"), new HashSet<Object>(Arrays.asList("a", "b")));
+        m.put(TransitFactory.keyword("big"), new BigInteger("18446744073709551616"));
+        m.put(TransitFactory.keyword("date"), new Date(1400000000000L));
+        m.put(TransitFactory.keyword("uuid"), new UUID(1L, 2L));
+
+        TransitFactory.Format[] engines = {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE};
+        for (TransitFactory.Format writeFormat : engines) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(writeFormat, out);
+            w.write(m);
+            w.write("second");
+            for (TransitFactory.Format readFormat : engines) {
+                Reader r = TransitFactory.reader(readFormat, new ByteArrayInputStream(out.toByteArray()));
+                assertEquals(m, r.read());
+                assertEquals("second", r.read());
+                assertNull(r.read(null));
+                r = TransitFactory.reader(readFormat, out.toByteArray());
+                assertEquals(m, r.read());
+            }
+        }
+
+        // the same bytes as the 0.6 engine
+        ByteArrayOutputStream a = new ByteArrayOutputStream();
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        List<Object> l = Arrays.asList(TransitFactory.keyword("foo"), TransitFactory.keyword("foo"), 1L, 1.5, "bar",
+                "a string of more than 31 bytes, which 0.6 writes as raw16");
+        TransitFactory.writer(TransitFactory.Format.MSGPACK, a).write(l);
+        TransitFactory.writer(TransitFactory.Format.MSGPACK_CORE, b).write(l);
+        assertTrue(Arrays.equals(a.toByteArray(), b.toByteArray()));
+
+        // native bin is read by both engines
+        byte[] bytes = {0, 1, 2, 3};
+        a = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.MSGPACK_CORE, a, new WriterOptions().withNativeBinary(true)).write(Arrays.asList(bytes));
+        for (TransitFactory.Format readFormat : engines) {
+            List<Object> read = TransitFactory.reader(readFormat, a.toByteArray()).read();
+            assertTrue(Arrays.equals(bytes, (byte[]) read.get(0)));
+        }
+
+        WriterPool<Object> writers = TransitFactory.writerPool(TransitFactory.Format.MSGPACK_CORE);
+        ReaderPool readers = TransitFactory.readerPool(TransitFactory.Format.MSGPACK_CORE);
+        assertEquals(m, readers.read(new ByteArrayInputStream(writers.writeToBytes(m))));
+    }
+
+    public void testReadEvents() throws Exception {
+        List<Object> l = new ArrayList<Object>();
+        l.add(Collections.singletonMap(TransitFactory.keyword("a"), Arrays.asList(1L, "x")));
+        l.add(Collections.singletonMap(TransitFactory.keyword("a"), new HashMap<Object, Object>()));
+        l.add(new HashSet<Object>(Arrays.asList(TransitFactory.keyword("a"))));
+        l.add(new LinkedList<Object>(Arrays.asList(new ArrayList<Object>())));
+        l.add(Collections.singletonMap(Arrays.asList(1L, 2L), "v"));
+        l.add(TransitFactory.taggedValue("point", Arrays.asList(1L, 2L)));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(l);
+            w.write(1.5);
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            TransitTest.EventRecorder events = new TransitTest.EventRecorder();
+            assertTrue(r.readEvents(events));
+            assertTrue(r.readEvents(events));
+            assertFalse(r.readEvents(events));
+            assertEquals("[{:a [1 x ]}{:a {}}#set[:a ]##list[[]]#{[1, 2] v }#point ]1.5 ", events.sb.toString());
+        }
+    }
+
+    public void testStreamWriter() throws Exception {
+        List<Object> rows = new ArrayList<Object>();
+        for (long i = 0; i < 3; i++)
+            rows.add(Collections.singletonMap(TransitFactory.keyword("id"), i));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            TransitFactory.writer(format, expected).write(rows);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            StreamWriter sw = w.stream().beginArray(rows.size());
+            for (Object row : rows)
+                sw.beginMap(1).key(TransitFactory.keyword("id")).value(((Map) row).get(TransitFactory.keyword("id"))).end();
+            sw.end();
+            assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+            assertEquals(rows, TransitFactory.reader(format, out.toByteArray()).read());
+
+            try {
+                w.stream().beginArray();
+                fail();
+            } catch (IllegalStateException e) {
+                // msgpack needs the size up front
+            }
+            w = TransitFactory.writer(format, new ByteArrayOutputStream());
+            sw = w.stream().beginArray(2).value(1L);
+            try {
+                sw.end();
+                fail();
+            } catch (IllegalStateException e) {
+                // one element short
+            }
+        }
+    }
+
+    public void testReadElements() throws Exception {
+        List<Object> rows = new ArrayList<Object>();
+        for (long i = 0; i < 5; i++)
+            rows.add(Collections.singletonMap(TransitFactory.keyword("id"), i));
+        List<Object> list = new LinkedList<Object>(Arrays.<Object>asList("a", 1L));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(rows);
+            w.write(list);
+            w.write("after");
+
+            Reader r = TransitFactory.reader(format, out.toByteArray());
+            Iterator<Object> i = r.readElements();
+            for (Object row : rows)
+                assertEquals(row, i.next());
+            assertFalse(i.hasNext());
+            List<Object> read = new ArrayList<Object>();
+            r.<Object>streamElements().forEach(read::add);
+            assertEquals(list, read);
+            assertEquals("after", r.read());
+        }
+    }
+
+    public void testSkip() {
+        List<Object> rows = new ArrayList<Object>();
+        for (long i = 0; i < 6; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), i);
+            m.put("name", TransitFactory.symbol("sym" + (i % 2)));
+            m.put(TransitFactory.keyword("tags"), new HashSet<Object>(Arrays.asList(TransitFactory.keyword("tag"), "~plain")));
+            m.put(Arrays.asList(1L, "listkey"), TransitFactory.keyword("cmap-value"));
+            m.put(TransitFactory.keyword("score"), i / 2.0);
+            rows.add(m);
+        }
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(rows);
+            w.write(rows);
+            w.write(TransitFactory.keyword("next"));
+            w.write(rows);
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            // cache codes in the later rows refer to strings in the skipped ones
+            assertEquals(Arrays.asList(rows.get(5), rows.get(2)), r.readSelected(5, 2));
+            assertTrue(r.skip());
+            assertEquals(TransitFactory.keyword("next"), r.read());
+            try {
+                r.readSelected(6);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // the array was still consumed
+            }
+            assertFalse(r.skip());
+        }
+    }
+
+    public void testProjection() {
+        Keyword id = TransitFactory.keyword("id");
+        Keyword user = TransitFactory.keyword("user");
+        Keyword name = TransitFactory.keyword("name");
+        List<Object> rows = new ArrayList<Object>();
+        List<Object> expected = new ArrayList<Object>();
+        for (long i = 0; i < 5; i++) {
+            Map<Object, Object> u = new HashMap<Object, Object>();
+            u.put(name, "user" + i);
+            u.put(TransitFactory.keyword("email"), TransitFactory.keyword("skipped-keyword"));
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(id, i);
+            m.put(user, u);
+            // the first occurrence may be skipped, and referred to from a selected entry
+            m.put(TransitFactory.keyword("alias"), TransitFactory.keyword("shared-value"));
+            m.put(TransitFactory.keyword("kind"), TransitFactory.keyword("shared-value"));
+            m.put(TransitFactory.keyword("score"), i / 2.0);
+            m.put(TransitFactory.keyword("skipped"), Arrays.asList(TransitFactory.symbol("sym"), new byte[] {1, 2}));
+            rows.add(m);
+
+            Map<Object, Object> e = new HashMap<Object, Object>();
+            e.put(id, i);
+            e.put(TransitFactory.keyword("kind"), TransitFactory.keyword("shared-value"));
+            e.put(user, Collections.singletonMap(name, "user" + i));
+            expected.add(e);
+        }
+        List<List<?>> paths = Arrays.asList(Arrays.asList(id), Arrays.asList(user, name), Arrays.asList(TransitFactory.keyword("kind")));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out, new WriterOptions().withNativeBinary(true));
+            w.write(rows);
+            w.write(TransitFactory.keyword("next"));
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()), null, null, paths);
+            assertEquals(expected, r.read());
+            assertEquals(TransitFactory.keyword("next"), r.read());
+        }
+    }
+
+    public void testTypedArrays() {
+        long[] longs = {0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 60};
+        double[] doubles = {0.5, -1e300, Double.NaN, Double.POSITIVE_INFINITY, 3.0};
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put("longs", longs);
+        m.put("doubles", doubles);
+
+        WriterOptions options = new WriterOptions().withTypedArrays(true);
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out, options);
+            w.write(m);
+            w.write(longs);
+            w.write(TransitFactory.taggedValue("doubles", Arrays.asList(1L, 2.5)));
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            Map<Object, Object> read = r.read();
+            assertTrue(Arrays.equals(longs, (long[]) read.get("longs")));
+            assertTrue(Arrays.equals(doubles, (double[]) read.get("doubles")));
+            assertTrue(Arrays.equals(longs, (long[]) r.read()));
+            assertTrue(Arrays.equals(new double[] {1.0, 2.5}, (double[]) r.read()));
+        }
+
+        // the longs of a UUID or a custom handler are its rep, not a typed array
+        UUID uuid = new UUID(1L, -2L);
+        BitSet bits = BitSet.valueOf(new long[] {5L, -1L});
+        List<Object> tagged = Arrays.asList(uuid, bits);
+        Map<Class, WriteHandler<?, ?>> custom = new HashMap<Class, WriteHandler<?, ?>>();
+        custom.put(UUID.class, new WriteHandlers.UUIDWriteHandler());
+        custom.put(BitSet.class, new WriteHandler<BitSet, long[]>() {
+            @Override
+            public String tag(BitSet o) { return "bits"; }
+            @Override
+            public long[] rep(BitSet o) { return o.toLongArray(); }
+            @Override
+            public String stringRep(BitSet o) { return null; }
+            @Override
+            public <V> WriteHandler<BitSet, V> getVerboseHandler() { return null; }
+        });
+        Map<String, ReadHandler<?, ?>> bitsHandler = new HashMap<String, ReadHandler<?, ?>>();
+        bitsHandler.put("bits", new ReadHandler<BitSet, List<Long>>() {
+            @Override
+            public BitSet fromRep(List<Long> rep) {
+                long[] l = new long[rep.size()];
+                for (int i = 0; i < l.length; i++)
+                    l[i] = rep.get(i);
+                return BitSet.valueOf(l);
+            }
+        });
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            TransitFactory.writer(format, expected, new WriterOptions().withHandlers(custom)).write(tagged);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TransitFactory.writer(format, out, options.withHandlers(custom)).write(tagged);
+            assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+            assertEquals(tagged, TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()), bitsHandler).read());
+        }
+    }
+
+    public void testWriteGroundTypes() {
+        Keyword foo = TransitFactory.keyword("ns/foo");
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put("~s", foo);
+        m.put(foo, Long.MIN_VALUE);
+        m.put(1L, 2);
+        m.put(2.5, Double.NaN);
+        m.put(true, Arrays.asList(1.5, false, "^x", foo, Double.POSITIVE_INFINITY));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(m);
+
+            Map<Object, Object> read = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray())).read();
+            assertEquals(5, read.size());
+            assertEquals(foo, read.get("~s"));
+            assertEquals(Long.MIN_VALUE, read.get(foo));
+            assertEquals(2L, read.get(1L));
+            assertTrue(((Double) read.get(2.5)).isNaN());
+            assertEquals(Arrays.asList(1.5, false, "^x", foo, Double.POSITIVE_INFINITY), read.get(true));
+        }
+    }
+
+    public void testReadInternedNames() throws IOException {
+
+        List l = readerOf(Arrays.asList("~:a", "~:a", "~$ns/b", "~$ns/b")).read();
+        assertSame(TransitFactory.keyword("a"), l.get(0));
+        assertSame(l.get(0), l.get(1));
+        assertSame(TransitFactory.symbol("ns/b"), l.get(2));
+        assertSame(l.get(2), l.get(3));
+    }
+
+    public void testJavaTime() {
+
+        Instant instant = Instant.parse("1969-07-20T20:17:40.5Z");
+        ZonedDateTime zoned = instant.atZone(ZoneOffset.UTC);
+        LocalDate date = LocalDate.of(1969, 7, 20);
+        List<Object> times = Arrays.<Object>asList(instant, zoned, date);
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TransitFactory.writer(format, out).write(times);
+            byte[] bytes = out.toByteArray();
+
+            assertEquals(Arrays.asList(new Date(instant.toEpochMilli()), new Date(instant.toEpochMilli()),
+                    new Date(date.toEpochDay() * 86400000L)),
+                    TransitFactory.reader(format, new ByteArrayInputStream(bytes)).read());
+            assertEquals(Arrays.asList(instant, instant, date.atStartOfDay(ZoneOffset.UTC).toInstant()),
+                    TransitFactory.reader(format, new ByteArrayInputStream(bytes),
+                            TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.INSTANT)).read());
+            assertEquals(Arrays.asList(zoned, zoned, date.atStartOfDay(ZoneOffset.UTC)),
+                    TransitFactory.reader(format, new ByteArrayInputStream(bytes),
+                            TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.ZONED_DATE_TIME)).read());
+            assertEquals(Arrays.asList(date, date, date),
+                    TransitFactory.reader(format, new ByteArrayInputStream(bytes),
+                            TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.LOCAL_DATE)).read());
+        }
+    }
+
+    public void testUUIDs() {
+
+        UUID a = new UUID(0x0123456789abcdefL, 0xfedcba9876543210L);
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put(a, a);
+        List<Object> l = Arrays.<Object>asList(a, UUID.randomUUID(), m);
+
+        // same bytes as through UUIDWriteHandler, which isn't the default
+        // instance and so takes the general path
+        Map<Class, WriteHandler<?, ?>> handlers = new HashMap<Class, WriteHandler<?, ?>>();
+        handlers.put(UUID.class, new com.cognitect.transit.impl.WriteHandlers.UUIDWriteHandler());
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TransitFactory.writer(format, out).write(l);
+            ByteArrayOutputStream general = new ByteArrayOutputStream();
+            TransitFactory.writer(format, general, handlers).write(l);
+            assertTrue(Arrays.equals(general.toByteArray(), out.toByteArray()));
+
+            assertEquals(l, TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray())).read());
+
+            // typed arrays don't apply to the pair of longs
+            out = new ByteArrayOutputStream();
+            TransitFactory.writer(format, out, new WriterOptions().withTypedArrays(true)).write(l);
+            assertEquals(l, TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray())).read());
+        }
+    }
+
+    public void testSessionCache() {
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; i < 2000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), (long) i);
+            m.put(TransitFactory.keyword("kind"), TransitFactory.keyword(i % 2 == 0 ? "even" : "odd"));
+            m.put("name" + (i % 100), TransitFactory.symbol("sym" + i));
+            values.add(m);
+        }
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream perValue = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, perValue);
+            for (Object v : values)
+                w.write(v);
+
+            ByteArrayOutputStream session = new ByteArrayOutputStream();
+            w = TransitFactory.writer(format, session, new WriterOptions().withSessionCache(true));
+            for (int i = 0; i < values.size(); i++) {
+                // the cache fills up before that
+                if (i == 1900)
+                    w.resetCache();
+                w.write(values.get(i));
+            }
+            assertTrue(session.size() < perValue.size());
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(session.toByteArray()));
+            for (int i = 0; i < values.size(); i++) {
+                if (i % 7 == 3)
+                    assertTrue(r.skip());
+                else
+                    assertEquals(values.get(i), r.read());
+            }
+            assertFalse(r.skip());
+
+            // quoted top-level values
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            w = TransitFactory.writer(format, out, new WriterOptions().withSessionCache(true));
+            w.write("~:foo");
+            w.write(TransitFactory.keyword("foo"));
+            r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            assertEquals("~:foo", r.read());
+            assertEquals(TransitFactory.keyword("foo"), r.read());
+        }
+    }
+
+    public void testClockCachePolicy() {
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; i < 3000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), (long) i);
+            m.put(TransitFactory.keyword("tag"), TransitFactory.keyword("tag" + i));
+            m.put("field" + (i % 20), TransitFactory.symbol("sym" + (i % 700)));
+            values.add(m);
+        }
+
+        // strings that come back after entries were replaced
+        List<Object> rows = new ArrayList<Object>();
+        for (int i = 0; i < 5000; i++)
+            rows.add(Arrays.asList(TransitFactory.keyword("tag" + i), TransitFactory.symbol("sym" + (i % 3000))));
+
+        WriterOptions clock = new WriterOptions().withCachePolicy(CachePolicy.CLOCK);
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream restart = new ByteArrayOutputStream();
+            TransitFactory.writer(format, restart).write(values);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TransitFactory.writer(format, out, clock).write(values);
+            assertTrue(out.size() < restart.size());
+            assertEquals(values, TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray())).read());
+
+            // every value starts over with an empty cache and clock
+            out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out, clock);
+            w.write(rows);
+            w.write(values);
+            w.write(rows);
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(rows, r.read());
+            assertTrue(r.skip());
+            assertEquals(rows, r.read());
+
+            // entries used and replaced across session values, read or skipped
+            out = new ByteArrayOutputStream();
+            w = TransitFactory.writer(format, out, clock.withSessionCache(true));
+            for (Object v : values)
+                w.write(v);
+            r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            for (int i = 0; i < values.size(); i++) {
+                if (i % 5 == 2)
+                    assertTrue(r.skip());
+                else
+                    assertEquals(values.get(i), r.read());
+            }
+            assertFalse(r.skip());
+        }
+    }
+
+    private void assertParallelRead(List<Object> values, List<Object> read) {
+        assertEquals(values.size(), read.size());
+        Keyword id = TransitFactory.keyword("id");
+        for (int i = 0; i < values.size() - 1; i++)
+            assertEquals(((Map) values.get(i)).get(id), ((Map) read.get(i)).get(id));
+        assertEquals(-1L, read.get(values.size() - 1));
+    }
+
+    // a stream that hands out one byte per read, so that every value is
+    // cut across reads
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    public void testParallelReader() throws Exception {
+        List<Object> values = new ArrayList<Object>();
+        for (long i = 0; i < 2000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), i * 1000003L);
+            m.put(TransitFactory.keyword("score"), i / 3.0);
+            m.put(TransitFactory.keyword("name"), "name " + i);
+            m.put(TransitFactory.keyword("blob"), new byte[(int) (i % 300)]);
+            m.put(TransitFactory.keyword("list"), Collections.nCopies((int) (i % 20), null));
+            values.add(m);
+        }
+        values.add(-1L);
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out, new WriterOptions().withNativeBinary(true));
+            for (Object v : values)
+                w.write(v);
+            byte[] bytes = out.toByteArray();
+
+            com.cognitect.transit.impl.ValueSplitter splitter =
+                    com.cognitect.transit.impl.ValueSplitter.create(format, new ByteArrayInputStream(bytes), 1);
+            List<Object> read = new ArrayList<Object>();
+            for (byte[] chunk; (chunk = splitter.nextChunk()) != null; )
+                read.add(TransitFactory.reader(format, chunk).read());
+            assertParallelRead(values, read);
+            splitter = com.cognitect.transit.impl.ValueSplitter.create(format, trickle(bytes), 1);
+            read = new ArrayList<Object>();
+            for (byte[] chunk; (chunk = splitter.nextChunk()) != null; )
+                read.add(TransitFactory.reader(format, chunk).read());
+            assertParallelRead(values, read);
+
+            read = new ArrayList<Object>();
+            long n = TransitFactory.parallelReader(format).readAll(new ByteArrayInputStream(bytes), read::add);
+            assertEquals(values.size(), n);
+            assertParallelRead(values, read);
+
+            // cut where the session cache is reset, with the clock marker
+            // in every chunk
+            out = new ByteArrayOutputStream();
+            w = TransitFactory.writer(format, out, new WriterOptions().withNativeBinary(true)
+                    .withSessionCache(true).withCacheResetInterval(100).withCachePolicy(CachePolicy.CLOCK));
+            for (Object v : values)
+                w.write(v);
+            read = new ArrayList<Object>();
+            n = TransitFactory.parallelReader(format).readAll(new ByteArrayInputStream(out.toByteArray()), read::add);
+            assertEquals(values.size(), n);
+            assertParallelRead(values, read);
+        }
+    }
+
+    public void testParallelWriter() throws Exception {
+        List<Object> values = new ArrayList<Object>();
+        for (long i = 0; i < 1000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), i * 1000003L);
+            m.put(TransitFactory.keyword("blob"), new byte[(int) (i % 300)]);
+            values.add(m);
+        }
+        values.add(-1L);
+
+        WriterOptions options = new WriterOptions().withNativeBinary(true);
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.MSGPACK, TransitFactory.Format.MSGPACK_CORE}) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, expected, options);
+            for (Object v : values)
+                w.write(v);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long n = TransitFactory.parallelWriter(format, options, null).writeAll(out, values);
+            assertEquals(values.size(), n);
+            assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+
+            List<Object> read = new ArrayList<Object>();
+            TransitFactory.parallelReader(format).readAll(new ByteArrayInputStream(out.toByteArray()), read::add);
+            assertParallelRead(values, read);
+        }
+    }
+
 }
@@ -25,6 +25,8 @@ import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.SimpleDateFormat;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 public class TransitTest extends TestCase {
@@ -355,6 +357,29 @@ public class TransitTest extends TestCase {
         assertEquals("abc", rc.cacheRead("abc", true));
     }
 
+    public void testReadStringsInPlace() {
+
+        Keyword cafe = TransitFactory.keyword("caf\u00e9");
+        List l = reader("[\"~~a\",\"~^b\",\"~`c\",\"\\u00e9t\\u00e9\",\"~\\u00e9x\",\"~:caf\\u00e9\",\"^0\"," +
+                "{\"~:caf\\u00e9\":\"^0\"},[\"^ \",\"long key\",\"^1\",\"~i7\",\"^2\"],\"^ \",\"\"]").read();
+
+        assertEquals(11, l.size());
+        assertEquals("~a", l.get(0));
+        assertEquals("^b", l.get(1));
+        assertEquals("`c", l.get(2));
+        assertEquals("\u00e9t\u00e9", l.get(3));
+        assertEquals(TransitFactory.taggedValue("\u00e9", "x"), l.get(4));
+        assertEquals(cafe, l.get(5));
+        assertEquals(cafe, l.get(6));
+        assertEquals(Collections.singletonMap(cafe, cafe), l.get(7));
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put("long key", cafe);
+        m.put(7L, "long key");
+        assertEquals(m, l.get(8));
+        assertEquals("^ ", l.get(9));
+        assertEquals("", l.get(10));
+    }
+
     public void testReadHandlerMapWithNoCustomHandlers() {
         assertEquals("foo", reader("\"foo\"", TransitFactory.readHandlerMap(null)).read());
     }
@@ -437,6 +462,12 @@ public class TransitTest extends TestCase {
         } catch (Throwable e) { throw new RuntimeException(e); }
     }
 
+    public String writeJson(Object o, WriterOptions options) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.JSON, out, options).write(o);
+        return out.toString();
+    }
+
     public String scalar(String value) {
         return "[\"~#'\","+value+"]";
     }
@@ -539,6 +570,78 @@ public class TransitTest extends TestCase {
         assertEquals(scalarVerbose("\"~f42.5\""), writeJsonVerbose(new BigDecimal("42.5")));
     }
 
+    public void testIso8601() {
+
+        DateTimeFormatter f = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+        Random rnd = new Random(7);
+        long[] millis = new long[1000];
+        millis[0] = 0;
+        millis[1] = -1;
+        millis[2] = Iso8601.parseMillis("0000-01-01T00:00:00Z");
+        millis[3] = Iso8601.parseMillis("9999-12-31T23:59:59.999Z");
+        millis[4] = 253402300800000L; // +10000
+        millis[5] = Iso8601.parseMillis("2000-02-29T12:00:00Z");
+        for (int i = 6; i < millis.length; i++)
+            millis[i] = rnd.nextLong() % 253402300800000L;
+        for (long ms : millis) {
+            String s = Iso8601.format(ms);
+            assertEquals(f.format(Instant.ofEpochMilli(ms)), s);
+            assertEquals(ms, Iso8601.parseMillis(s));
+        }
+
+        String s = "2014-03-09T02:30:15.123456789+05:30";
+        Instant i = OffsetDateTime.parse(s).toInstant();
+        assertEquals(i.getEpochSecond(), Iso8601.epochSecond(s));
+        assertEquals(i.getNano(), Iso8601.nanos(s));
+        assertEquals(Iso8601.parseMillis("2014-03-09T10:30:15.5Z"), Iso8601.parseMillis("2014-03-09T02:30:15.5-0800"));
+        assertEquals(Iso8601.parseMillis("2014-03-09T10:30:15Z"), Iso8601.parseMillis("2014-03-09T11:30:15+01"));
+        assertEquals(Iso8601.parseMillis("2014-03-09T10:30:15Z"), Iso8601.parseMillis("2014-03-09T10:30:15"));
+        assertEquals(-62198755200000L, Iso8601.parseMillis("-0001-01-01T00:00:00Z"));
+
+        for (String bad : new String[] {"2014-02-30T00:00:00Z", "2014-03-09 10:30:15Z", "2014-03-09T24:00:00Z",
+                "2014-03-09T10:30:15+5", "2014-03-09T10:30:15Zulu", "2014-3-9T10:30:15Z"}) {
+            try {
+                Iso8601.parseMillis(bad);
+                fail("parsed " + bad);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testJavaTime() {
+
+        Instant instant = Instant.parse("2014-03-09T10:30:15.123Z");
+        ZonedDateTime zoned = ZonedDateTime.of(2014, 3, 9, 11, 30, 15, 123000000, ZoneId.of("Europe/Zurich"));
+        LocalDate date = LocalDate.of(2014, 3, 9);
+        long ms = instant.toEpochMilli();
+
+        assertEquals(scalar("\"~m" + ms + "\""), writeJson(instant));
+        assertEquals(scalar("\"~m" + ms + "\""), writeJson(zoned));
+        assertEquals(scalar("\"~m" + (ms - 37815123) + "\""), writeJson(date));
+        assertEquals(scalarVerbose("\"~t2014-03-09T10:30:15.123Z\""), writeJsonVerbose(instant));
+        assertEquals(scalarVerbose("\"~t2014-03-09T10:30:15.123Z\""), writeJsonVerbose(zoned));
+        assertEquals(scalarVerbose("\"~t2014-03-09T00:00:00.000Z\""), writeJsonVerbose(date));
+
+        List<Object> times = Arrays.<Object>asList(instant, zoned, date);
+        for (String json : new String[] {writeJson(times), writeJsonVerbose(times)}) {
+            assertEquals(Arrays.asList(new Date(ms), new Date(ms), new Date(date.toEpochDay() * 86400000L)),
+                    reader(json).read());
+            assertEquals(Arrays.asList(instant, instant, Instant.ofEpochSecond(date.toEpochDay() * 86400L)),
+                    reader(json, TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.INSTANT)).read());
+            assertEquals(Arrays.asList(zoned.withZoneSameInstant(ZoneOffset.UTC), zoned.withZoneSameInstant(ZoneOffset.UTC),
+                    date.atStartOfDay(ZoneOffset.UTC)),
+                    reader(json, TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.ZONED_DATE_TIME)).read());
+            assertEquals(Arrays.asList(date, date, date),
+                    reader(json, TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.LOCAL_DATE)).read());
+        }
+
+        // sub-millisecond precision survives reading "t" as an instant
+        assertEquals(Instant.parse("2014-03-09T10:30:15.123456Z"),
+                reader("\"~t2014-03-09T10:30:15.123456Z\"",
+                        TransitFactory.timeReadHandlers(TransitFactory.TimeRepresentation.INSTANT)).read());
+    }
+
     public void testWriteTime() throws Exception {
 
         Date d = new Date();
@@ -555,6 +658,40 @@ public class TransitTest extends TestCase {
         assertEquals(scalarVerbose("\"~u" + uuid.toString() + "\""), writeJsonVerbose(uuid));
     }
 
+    public void testUUIDs() throws Exception {
+
+        UUID a = new UUID(0x0123456789abcdefL, 0xfedcba9876543210L);
+        UUID b = new UUID(0L, -1L);
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put(a, b);
+        List<Object> l = Arrays.<Object>asList(a, b, m);
+
+        assertEquals("[\"~u01234567-89ab-cdef-fedc-ba9876543210\",\"~u00000000-0000-0000-ffff-ffffffffffff\"," +
+                "[\"^ \",\"~u01234567-89ab-cdef-fedc-ba9876543210\",\"~u00000000-0000-0000-ffff-ffffffffffff\"]]",
+                writeJson(l));
+        assertEquals(l, reader(writeJson(l)).read());
+        assertEquals(l, reader(writeJsonVerbose(l)).read());
+
+        // upper case and non-canonical forms are still read
+        assertEquals(a, reader("\"~u01234567-89AB-CDEF-FEDC-BA9876543210\"").read());
+        assertEquals(new UUID(0x0000000100020003L, 0x0004000000000005L), reader("\"~u1-2-3-4-5\"").read());
+        try {
+            reader("\"~u0123456x-89ab-cdef-fedc-ba9876543210\"").read();
+            fail("read an invalid UUID");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // a custom "u" handler still sees the string
+        Map<String, ReadHandler<?, ?>> handlers = new HashMap<String, ReadHandler<?, ?>>();
+        handlers.put("u", new ReadHandler<Object, String>() {
+            @Override
+            public Object fromRep(String rep) { return rep.toUpperCase(); }
+        });
+        assertEquals("01234567-89AB-CDEF-FEDC-BA9876543210",
+                reader("\"~u01234567-89ab-cdef-fedc-ba9876543210\"", handlers).read());
+    }
+
     public void testWriteURI() throws Exception {
 
         URI uri = TransitFactory.uri("http://www.foo.com");
@@ -709,6 +846,33 @@ public class TransitTest extends TestCase {
         assertEquals("^" + (char)(WriteCache.BASE_CHAR_IDX + 3), wc.cacheWrite("abcd", true));
     }
 
+    public void testWriteCacheParts() {
+
+        WriteCache wc = new WriteCache(true);
+        assertNull(wc.cacheWrite("~", ":", "a", false));
+        assertNull(wc.cacheWrite("~", ":", "ab", false));
+        assertEquals("^" + (char)WriteCache.BASE_CHAR_IDX, wc.cacheWrite("~", ":", "ab", false));
+        // same string split differently is the same entry
+        assertEquals("^" + (char)WriteCache.BASE_CHAR_IDX, wc.cacheWrite("~:ab", false));
+        assertEquals("^" + (char)WriteCache.BASE_CHAR_IDX, wc.cacheWrite("~:", null, new String("ab"), true));
+        assertNull(wc.cacheWrite(null, null, "abcd", false));
+        assertNull(wc.cacheWrite(null, null, "abcd", true));
+
+        wc.init();
+        assertNull(wc.cacheWrite("~", ":", "ab", false));
+        assertEquals("^" + (char)WriteCache.BASE_CHAR_IDX, wc.cacheWrite("~", ":", "ab", false));
+
+        // filling the cache starts over with the first code
+        wc.init();
+        for (int i = 0; i < WriteCache.MAX_CACHE_ENTRIES; i++)
+            assertNull(wc.cacheWrite("~", ":", "k" + i, false));
+        assertEquals("^" + (char)(WriteCache.BASE_CHAR_IDX + 43) + (char)(WriteCache.BASE_CHAR_IDX + 43),
+                wc.cacheWrite("~", ":", "k" + (WriteCache.MAX_CACHE_ENTRIES - 1), false));
+        assertNull(wc.cacheWrite("~", ":", "next", false));
+        assertNull(wc.cacheWrite("~", ":", "k0", false));
+        assertEquals("^" + (char)WriteCache.BASE_CHAR_IDX, wc.cacheWrite("~", ":", "next", false));
+    }
+
     public void testWriteCacheDisabled() {
 
         WriteCache wc = new WriteCache(false);
@@ -774,6 +938,32 @@ public class TransitTest extends TestCase {
         assertFalse(k1.equals(s));
     }
 
+    public void testKeywordInterning() {
+
+        Keyword k = TransitFactory.keyword("ns/foo");
+        assertSame(k, TransitFactory.keyword(":ns/foo"));
+        assertSame(k, TransitFactory.keyword(new String("ns/foo")));
+        assertSame(TransitFactory.symbol("ns/foo"), TransitFactory.symbol("ns/foo"));
+        assertFalse(k.equals(TransitFactory.symbol("ns/foo")));
+
+        // short keywords aren't cached, but are still shared
+        List l = reader("[\"~:a\",\"~:a\",\"~$b\",\"~$b\"]").read();
+        assertSame(TransitFactory.keyword("a"), l.get(0));
+        assertSame(l.get(0), l.get(1));
+        assertSame(TransitFactory.symbol("b"), l.get(2));
+        assertSame(l.get(2), l.get(3));
+
+        // instances made directly are equal to the canonical ones
+        Keyword made = new KeywordImpl("ns/foo");
+        assertNotSame(k, made);
+        assertEquals(k, made);
+        assertEquals(made, k);
+        assertEquals(k.hashCode(), made.hashCode());
+        assertEquals("ns", made.getNamespace());
+        assertEquals("foo", made.getName());
+        assertEquals(TransitFactory.symbol("ns/foo"), new SymbolImpl("ns/foo"));
+    }
+
     public void testKeywordHashCode() {
 
         String s = "foo";
@@ -973,4 +1163,843 @@ public class TransitTest extends TestCase {
 
     }
 
+
+    public void testWriteGroundTypes() {
+        Map<Object, Object> m = new LinkedHashMap<Object, Object>();
+        m.put("~s", TransitFactory.keyword("foo"));
+        m.put(TransitFactory.keyword("ns/bar"), 9007199254740992L);
+        m.put(1L, 2);
+        m.put(2.5, Double.NaN);
+        m.put(true, Double.NEGATIVE_INFINITY);
+        m.put(-3, Arrays.asList(1.5, false, "^x", TransitFactory.keyword("ns/bar")));
+        assertEquals("[\"^ \",\"~~s\",\"~:foo\",\"~:ns/bar\",\"~i9007199254740992\",\"~i1\",2," +
+                        "\"~d2.5\",\"~zNaN\",\"~?t\",\"~z-INF\",\"~i-3\",[1.5,false,\"~^x\",\"^1\"]]",
+                write(m, TransitFactory.Format.JSON));
+
+        // overriding a ground type's handler turns off its fast path
+        Map<Class, WriteHandler<?,?>> customHandlers = new HashMap<Class, WriteHandler<?,?>>();
+        customHandlers.put(Long.class, new WriteHandler<Long, String>() {
+            @Override
+            public String tag(Long o) { return "s"; }
+
+            @Override
+            public String rep(Long o) { return "#" + o; }
+
+            @Override
+            public String stringRep(Long o) { return rep(o); }
+
+            @Override
+            public <V> WriteHandler<Long, V> getVerboseHandler() { return null; }
+        });
+        assertEquals("[\"#1\",2,\"x\"]",
+                write(Arrays.asList(1L, 2, "x"), TransitFactory.Format.JSON, TransitFactory.writeHandlerMap(customHandlers)));
+    }
+
+    public void testWriteManualFlush() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, out,
+                new WriterOptions().withFlushPolicy(FlushPolicy.MANUAL));
+        w.write(1L);
+        w.write("foo");
+        assertEquals(0, out.size());
+        w.flush();
+        assertEquals("[\"~#'\",1] [\"~#'\",\"foo\"]", out.toString());
+
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1L, (long) r.read());
+        assertEquals("foo", r.read());
+    }
+
+    public void testWriteFlushEveryBytes() {
+        final int[] flushes = {0};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() { flushes[0]++; }
+        };
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, out,
+                new WriterOptions().withFlushPolicy(FlushPolicy.everyBytes(64)));
+        for (int i = 0; i < 100; i++) {
+            w.write(Arrays.asList("a string value", (long) i));
+        }
+        assertTrue(out.size() > 0);
+        assertTrue(flushes[0] > 0 && flushes[0] < 100);
+        w.flush();
+
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Arrays.asList("a string value", (long) i), r.read());
+        }
+
+        try {
+            FlushPolicy.everyBytes(0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+
+    public void testWriterPool() throws Exception {
+        final WriterPool<Object> writers = TransitFactory.writerPool(TransitFactory.Format.JSON);
+        final ReaderPool readers = TransitFactory.readerPool(TransitFactory.Format.JSON);
+        final List<Object> l = Arrays.asList(TransitFactory.keyword("foo"), TransitFactory.keyword("foo"), 1L);
+
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writers.write(out, l);
+            // every write starts with a fresh cache and no root separator
+            assertEquals("[\"~:foo\",\"^0\",1]", out.toString());
+            assertEquals(l, readers.read(new ByteArrayInputStream(out.toByteArray())));
+        }
+
+        Thread[] threads = new Thread[8];
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            final long n = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            Map<Object, Object> m = new HashMap<Object, Object>();
+                            m.put(TransitFactory.keyword("thread"), n);
+                            m.put(TransitFactory.keyword("i"), (long) i);
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            writers.write(out, m);
+                            assertEquals(m, readers.read(new ByteArrayInputStream(out.toByteArray())));
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0]);
+    }
+
+    public void testWriterPoolDiscardsFailedWriter() {
+        WriterPool<Object> writers = TransitFactory.writerPool(TransitFactory.Format.JSON);
+        try {
+            writers.write(new ByteArrayOutputStream(), Arrays.asList(1L, new Point(1, 2)));
+            fail("expected exception");
+        } catch (RuntimeException e) {
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writers.write(out, Arrays.asList(1L, 2L));
+        assertEquals("[1,2]", out.toString());
+    }
+
+
+    public void testWriterPoolToBytes() {
+        WriterPool<Object> writers = TransitFactory.writerPool(TransitFactory.Format.JSON);
+        List<Object> l = Arrays.asList(TransitFactory.keyword("foo"), TransitFactory.keyword("foo"), "bar");
+        String expected = "[\"~:foo\",\"^0\",\"bar\"]";
+
+        assertEquals(expected, new String(writers.writeToBytes(l)));
+
+        java.nio.ByteBuffer heap = java.nio.ByteBuffer.allocate(64);
+        heap.put((byte) ' ');
+        assertEquals(expected.length(), writers.writeTo(heap, l));
+        assertEquals(expected.length() + 1, heap.position());
+        assertEquals(" " + expected, new String(heap.array(), 0, heap.position()));
+
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(64);
+        writers.writeTo(direct, l);
+        direct.flip();
+        byte[] bytes = new byte[direct.remaining()];
+        direct.get(bytes);
+        assertEquals(expected, new String(bytes));
+
+        java.nio.ByteBuffer small = java.nio.ByteBuffer.allocate(4);
+        try {
+            writers.writeTo(small, l);
+            fail("expected BufferOverflowException");
+        } catch (java.nio.BufferOverflowException e) {
+            assertEquals(0, small.position());
+        }
+
+        // large values grow the buffer
+        List<Object> large = new ArrayList<Object>();
+        for (int i = 0; i < 10000; i++)
+            large.add((long) i);
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, new ByteArrayInputStream(writers.writeToBytes(large)));
+        assertEquals(large, r.read());
+    }
+
+
+    public void testReadFromBytesAndByteBuffers() throws Exception {
+        byte[] bytes = "xx[\"~:foo\",\"^0\",1] {\"~:a\":2}yy".getBytes("UTF-8");
+        List<Object> first = Arrays.asList(TransitFactory.keyword("foo"), TransitFactory.keyword("foo"), 1L);
+        Map<Object, Object> second = new HashMap<Object, Object>();
+        second.put(TransitFactory.keyword("a"), 2L);
+
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, bytes, 2, bytes.length - 4);
+        assertEquals(first, r.read());
+        assertEquals(second, r.read());
+        assertNull(r.read(null));
+
+        java.nio.ByteBuffer heap = java.nio.ByteBuffer.wrap(bytes, 2, bytes.length - 4).slice();
+        r = TransitFactory.reader(TransitFactory.Format.JSON, heap);
+        assertEquals(first, r.read());
+        assertEquals(second, r.read());
+        assertEquals(0, heap.position());
+
+        java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes, 2, bytes.length - 4);
+        direct.flip();
+        r = TransitFactory.reader(TransitFactory.Format.JSON, direct);
+        assertEquals(first, r.read());
+        assertEquals(second, r.read());
+        assertEquals(0, direct.position());
+    }
+
+    public void testReadFromMappedFile() throws Exception {
+        File f = File.createTempFile("transit", ".json");
+        try {
+            OutputStream out = new FileOutputStream(f);
+            Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, out);
+            for (long i = 0; i < 1000; i++)
+                w.write(Arrays.asList(TransitFactory.keyword("entry"), i));
+            out.close();
+
+            java.nio.channels.FileChannel ch = new RandomAccessFile(f, "r").getChannel();
+            try {
+                java.nio.MappedByteBuffer mapped = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                Reader r = TransitFactory.reader(TransitFactory.Format.JSON, mapped);
+                final long[] n = {0};
+                r.readWhile(new java.util.function.Predicate<Object>() {
+                    @Override
+                    public boolean test(Object o) {
+                        assertEquals(Arrays.asList(TransitFactory.keyword("entry"), n[0]++), o);
+                        return true;
+                    }
+                });
+                assertEquals(1000, n[0]);
+            } finally {
+                ch.close();
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+
+    public void testReaderOverPipedStream() throws Exception {
+        // creating the reader must not read, so that it can be made before
+        // anything is written to the other end
+        PipedOutputStream out = new PipedOutputStream();
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, new PipedInputStream(out));
+        out.write("[\"~#'\",\"foo\"]".getBytes());
+        out.close();
+        assertEquals("foo", r.read());
+    }
+
+    public void testWriteHandlerMapResolution() throws Exception {
+        final WriteHandlerMap handlers = new WriteHandlerMap();
+        int size = handlers.size();
+
+        assertSame(handlers.get(List.class), handlers.getHandler(new LinkedList<Object>()));
+        assertSame(handlers.get(Map.class), handlers.getHandler(new TreeMap<Object, Object>()));
+        assertSame(handlers.get(Date.class), handlers.getHandler(new java.sql.Timestamp(0)));
+        assertNull(handlers.getHandler(new Point(1, 2)));
+        assertNull(handlers.getHandler(new Point(1, 2)));
+        // resolving does not add entries to the map itself
+        assertEquals(size, handlers.size());
+        assertFalse(handlers.containsKey(LinkedList.class));
+
+        Thread[] threads = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            assertSame(handlers.get(List.class), handlers.getHandler(new ArrayList<Object>()));
+                            assertSame(handlers.get(Set.class), handlers.getHandler(new TreeSet<Object>()));
+                            assertNull(handlers.getHandler(new StringBuilder()));
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (failure[0] != null)
+            throw new RuntimeException(failure[0]);
+        assertEquals(size, handlers.size());
+    }
+
+
+    public void testWriteMapClassifiesKeysOnce() {
+        final Map<Object, Integer> seen = new IdentityHashMap<Object, Integer>();
+        final Object key = TransitFactory.keyword("k");
+        final List<Object> cmapKey = Arrays.<Object>asList(1L, 2L);
+        java.util.function.Function<Object, Object> transform = new java.util.function.Function<Object, Object>() {
+            @Override
+            public Object apply(Object o) {
+                if (o == key || o == cmapKey) {
+                    Integer n = seen.get(o);
+                    seen.put(o, n == null ? 1 : n + 1);
+                }
+                return o;
+            }
+        };
+
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put(key, 1L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.JSON, out, null, null, transform).write(m);
+        assertEquals("[\"^ \",\"~:k\",1]", out.toString());
+        // once to classify the keys, once to write it
+        assertEquals(2, (int) seen.get(key));
+
+        m = new HashMap<Object, Object>();
+        m.put(cmapKey, "v");
+        out = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.JSON_VERBOSE, out, null, null, transform).write(m);
+        assertEquals("{\"~#cmap\":[[1,2],\"v\"]}", out.toString());
+        assertEquals(2, (int) seen.get(cmapKey));
+
+        assertEquals("[\"~#cmap\",[[\"^0\",[[1,2],\"v\"]],1]]", writeJson(Collections.singletonMap(m, 1L)));
+    }
+
+    static class EventRecorder implements ReadEventHandler {
+        final StringBuilder sb = new StringBuilder();
+
+        @Override public void startMap() { sb.append('{'); }
+        @Override public void key(Object key) { sb.append(key).append(' '); }
+        @Override public void endMap() { sb.append('}'); }
+        @Override public void startArray() { sb.append('['); }
+        @Override public void endArray() { sb.append(']'); }
+        @Override public void startTagged(String tag) { sb.append('#').append(tag); }
+        @Override public void endTagged() { sb.append('#'); }
+        @Override public void value(Object value) {
+            if (value instanceof TaggedValue)
+                value = "#" + ((TaggedValue) value).getTag();
+            else if (value instanceof Ratio)
+                value = ((Ratio) value).getValue();
+            sb.append(value).append(' ');
+        }
+    }
+
+    public void testReadEvents() {
+        List<Object> l = new ArrayList<Object>();
+        l.add(Collections.singletonMap(TransitFactory.keyword("a"), Arrays.asList(1L, "x")));
+        l.add(Collections.singletonMap(TransitFactory.keyword("a"), new HashMap<Object, Object>()));
+        l.add(new HashSet<Object>(Arrays.asList(TransitFactory.keyword("a"))));
+        l.add(new LinkedList<Object>(Arrays.asList(new ArrayList<Object>())));
+        l.add(Collections.singletonMap(Arrays.asList(1L, 2L), "v"));
+        l.add(TransitFactory.taggedValue("point", Arrays.asList(1L, 2L)));
+        l.add(new RatioImpl(BigInteger.ONE, BigInteger.valueOf(2)));
+        String expected = "[{:a [1 x ]}{:a {}}#set[:a ]##list[[]]#{[1, 2] v }#point 0.5 ]1.5 ";
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(l);
+            w.write(1.5);
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            EventRecorder events = new EventRecorder();
+            assertTrue(r.readEvents(events));
+            assertTrue(r.readEvents(events));
+            assertFalse(r.readEvents(events));
+            assertEquals(expected, events.sb.toString());
+        }
+    }
+
+    public void testStreamWriter() {
+        List<Object> rows = new ArrayList<Object>();
+        for (long i = 0; i < 3; i++) {
+            Map<Object, Object> row = new HashMap<Object, Object>();
+            row.put(TransitFactory.keyword("id"), i);
+            rows.add(row);
+        }
+        Map<Object, Object> doc = new HashMap<Object, Object>();
+        doc.put(TransitFactory.keyword("rows"), rows);
+        doc.put(TransitFactory.keyword("tags"), new ArrayList<Object>());
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, expected);
+            w.write(doc);
+            w.write("next");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            w = TransitFactory.writer(format, out);
+            StreamWriter sw = w.stream().beginMap();
+            sw.key(TransitFactory.keyword("rows")).beginArray();
+            for (Object row : rows) {
+                sw.beginMap();
+                sw.key(TransitFactory.keyword("id")).value(((Map) row).get(TransitFactory.keyword("id")));
+                sw.end();
+            }
+            sw.end();
+            sw.key(TransitFactory.keyword("tags")).beginArray().end();
+            // nothing reaches the stream until the value is complete
+            assertEquals(0, out.size());
+            sw.end();
+            w.stream().value("next");
+            assertEquals(expected.toString(), out.toString());
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(doc, r.read());
+            assertEquals("next", r.read());
+        }
+
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, new ByteArrayOutputStream());
+        StreamWriter sw = w.stream().beginMap();
+        try {
+            sw.value(1L);
+            fail();
+        } catch (IllegalStateException e) {
+            // expecting a key
+        }
+        try {
+            w.write("other");
+            fail();
+        } catch (IllegalStateException e) {
+            // the streamed value is not complete
+        }
+        sw.key("k").value(1L);
+        try {
+            sw.key(Arrays.asList(1L, 2L));
+            fail();
+        } catch (RuntimeException e) {
+            // not a valid map key
+        }
+        sw.end();
+        sw = w.stream().beginArray(1).value(1L);
+        try {
+            sw.value(2L);
+            fail();
+        } catch (IllegalStateException e) {
+            // more elements than declared
+        }
+
+        // a value the emitter fails on abandons the streamed value
+        w = TransitFactory.writer(TransitFactory.Format.JSON, new ByteArrayOutputStream());
+        sw = w.stream().beginArray();
+        try {
+            sw.value(new Object());
+            fail();
+        } catch (RuntimeException e) {
+            // no handler
+        }
+        try {
+            sw.end();
+            fail();
+        } catch (IllegalStateException e) {
+            // already abandoned
+        }
+        w.write("other");
+    }
+
+    public void testReadElements() {
+        List<Object> rows = new ArrayList<Object>();
+        for (long i = 0; i < 5; i++)
+            rows.add(Collections.singletonMap(TransitFactory.keyword("id"), i));
+        List<Object> strings = Arrays.<Object>asList("~x", "^ ", TransitFactory.keyword("kw"), TransitFactory.keyword("kw"));
+        Set<Object> set = new HashSet<Object>(Arrays.<Object>asList(1L, 2L));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(rows);
+            w.write(strings);
+            w.write(set);
+            w.write(new ArrayList<Object>());
+            w.write(Collections.singletonMap("a", 1L));
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            Iterator<Object> i = r.readElements();
+            for (Object row : rows) {
+                assertTrue(i.hasNext());
+                // the cached key resolves across elements
+                assertEquals(row, i.next());
+            }
+            assertFalse(i.hasNext());
+            assertEquals(strings, r.streamElements().collect(java.util.stream.Collectors.toList()));
+            assertEquals(set, r.streamElements().collect(java.util.stream.Collectors.toSet()));
+            assertFalse(r.readElements().hasNext());
+            try {
+                r.readElements();
+                fail();
+            } catch (RuntimeException e) {
+                // a map
+            }
+        }
+    }
+
+    public void testSkip() {
+        List<Object> rows = new ArrayList<Object>();
+        for (long i = 0; i < 6; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), i);
+            m.put("name", TransitFactory.symbol("sym" + (i % 2)));
+            m.put(TransitFactory.keyword("tags"), new HashSet<Object>(Arrays.asList(TransitFactory.keyword("tag"), "~plain")));
+            m.put(Arrays.asList(1L, "listkey"), TransitFactory.keyword("cmap-value"));
+            rows.add(m);
+        }
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(rows);
+            w.write(rows);
+            w.write(TransitFactory.keyword("next"));
+            w.write(rows);
+            w.write(new HashSet<Object>(Arrays.asList(1L)));
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            // cache codes in the later rows refer to strings in the skipped ones
+            assertEquals(Arrays.asList(rows.get(4), rows.get(1), rows.get(4)), r.readSelected(4, 1, 4));
+            assertTrue(r.skip());
+            assertEquals(TransitFactory.keyword("next"), r.read());
+            try {
+                r.readSelected(5, 6);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // the array was still consumed
+            }
+            assertEquals(Arrays.asList(1L), r.readSelected(0));
+            assertFalse(r.skip());
+        }
+    }
+
+    public void testProjection() {
+        Keyword id = TransitFactory.keyword("id");
+        Keyword user = TransitFactory.keyword("user");
+        Keyword name = TransitFactory.keyword("name");
+        Keyword tags = TransitFactory.keyword("tags");
+        List<Object> rows = new ArrayList<Object>();
+        List<Object> expected = new ArrayList<Object>();
+        for (long i = 0; i < 5; i++) {
+            Map<Object, Object> u = new HashMap<Object, Object>();
+            u.put(name, "user" + i);
+            u.put(TransitFactory.keyword("email"), TransitFactory.keyword("skipped-keyword"));
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(id, i);
+            m.put(user, u);
+            // the first occurrence may be skipped, and referred to from a selected entry
+            m.put(TransitFactory.keyword("alias"), TransitFactory.keyword("shared-value"));
+            m.put(TransitFactory.keyword("kind"), TransitFactory.keyword("shared-value"));
+            m.put(tags, new HashSet<Object>(Arrays.asList(TransitFactory.keyword("tag" + i))));
+            m.put(TransitFactory.keyword("skipped"), Arrays.asList(TransitFactory.symbol("sym"), "~#notatag",
+                    Collections.singletonMap(Arrays.asList(1L), TransitFactory.keyword("cmap-value"))));
+            rows.add(m);
+
+            Map<Object, Object> e = new HashMap<Object, Object>();
+            e.put(id, i);
+            e.put(TransitFactory.keyword("kind"), TransitFactory.keyword("shared-value"));
+            e.put(user, Collections.singletonMap(name, "user" + i));
+            e.put(tags, m.get(tags));
+            expected.add(e);
+        }
+        List<List<?>> paths = Arrays.asList(Arrays.asList(id), Arrays.asList(user, name), Arrays.asList(TransitFactory.keyword("kind")),
+                Arrays.asList(tags), Arrays.asList(tags, TransitFactory.keyword("ignored")));
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            w.write(rows);
+            w.write(rows.get(0));
+            w.write(TransitFactory.keyword("skipped"));
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()), null, null, paths);
+            assertEquals(expected, r.read());
+            assertEquals(expected.get(0), r.read());
+            assertEquals(TransitFactory.keyword("skipped"), r.read());
+
+            r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()), null, null,
+                    Arrays.asList(Arrays.asList(user), Collections.emptyList()));
+            assertEquals(rows, r.read());
+        }
+
+        // keys without a string encoding are matched once decoded
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put(1L, "one");
+        m.put(2L, "two");
+        m.put("three", 3L);
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, new ByteArrayInputStream(writeJson(m).getBytes()), null, null,
+                Arrays.asList(Arrays.asList(1L), Arrays.asList("three")));
+        Map<Object, Object> expectedMap = new HashMap<Object, Object>(m);
+        expectedMap.remove(2L);
+        assertEquals(expectedMap, r.read());
+    }
+
+    public void testTypedArrays() {
+        long[] longs = {0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 60};
+        double[] doubles = {0.5, -1e300, Double.NaN, Double.POSITIVE_INFINITY, 3.0};
+        Map<Object, Object> m = new HashMap<Object, Object>();
+        m.put("longs", longs);
+        m.put("doubles", doubles);
+
+        WriterOptions options = new WriterOptions().withTypedArrays(true);
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out, options);
+            w.write(longs);
+            w.write(m);
+            w.write(new long[0]);
+
+            Reader r = TransitFactory.reader(format, new ByteArrayInputStream(out.toByteArray()));
+            assertTrue(Arrays.equals(longs, (long[]) r.read()));
+            Map<Object, Object> read = r.read();
+            assertTrue(Arrays.equals(longs, (long[]) read.get("longs")));
+            assertTrue(Arrays.equals(doubles, (double[]) read.get("doubles")));
+            assertEquals(0, ((long[]) r.read()).length);
+        }
+
+        // untagged by default
+        assertEquals("[0,-1,\"~i9223372036854775807\",\"~i-9223372036854775808\",\"~i1152921504606846976\"]", writeJson(longs));
+        assertEquals("[\"~#longs\",[1,2]]", writeJson(new long[] {1L, 2L}, options));
+        assertEquals("[\"~#doubles\",[1.5]]", writeJson(new double[] {1.5}, options));
+
+        // custom handlers win
+        Map<Class, WriteHandler<?, ?>> custom = new HashMap<Class, WriteHandler<?, ?>>();
+        custom.put(long[].class, new WriteHandlers.ArrayWriteHandler());
+        assertEquals("[1,2]", writeJson(new long[] {1L, 2L}, options.withHandlers(custom)));
+        assertEquals("[\"~#longs\",[1,2]]", writeJson(new long[] {1L, 2L},
+                options.withHandlers(TransitFactory.writeHandlerMap(new HashMap<Class, WriteHandler<?, ?>>()))));
+    }
+
+    // a stream that hands out one byte per read, so that every value is
+    // cut across reads
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    public void testParallelReader() throws Exception {
+        List<Object> values = new ArrayList<Object>();
+        for (long i = 0; i < 2000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), i);
+            m.put(TransitFactory.keyword("name"), "n\\\"[{" + i);
+            m.put(TransitFactory.keyword("tags"), Arrays.asList(TransitFactory.keyword("t"), "\u00e9\u4e2d"));
+            values.add(m);
+        }
+        values.add("top-level string");
+        values.add(42L);
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, out);
+            for (Object v : values) {
+                w.write(v);
+                out.write('\n');
+            }
+            byte[] bytes = out.toByteArray();
+
+            // every value in a chunk of its own
+            ValueSplitter splitter = ValueSplitter.create(format, new ByteArrayInputStream(bytes), 1);
+            int chunks = 0;
+            for (byte[] chunk; (chunk = splitter.nextChunk()) != null; chunks++)
+                assertEquals(values.get(chunks), TransitFactory.reader(format, chunk).read());
+            assertEquals(values.size(), chunks);
+            splitter = ValueSplitter.create(format, trickle(bytes), 1);
+            for (chunks = 0; splitter.nextChunk() != null; chunks++);
+            assertEquals(values.size(), chunks);
+
+            final List<Object> read = new ArrayList<Object>();
+            long n = TransitFactory.parallelReader(format).readAll(new ByteArrayInputStream(bytes), read::add);
+            assertEquals(values.size(), n);
+            assertEquals(values, read);
+
+            final List<Object> unordered = Collections.synchronizedList(new ArrayList<Object>());
+            n = TransitFactory.parallelReader(format, null, null, null, false).readAll(new ByteArrayInputStream(bytes), unordered::add);
+            assertEquals(values.size(), n);
+            assertEquals(new HashSet<Object>(values), new HashSet<Object>(unordered));
+        }
+
+        // session streams are cut where the cache is reset, and a clock
+        // marker goes with every chunk
+        WriterOptions session = new WriterOptions().withSessionCache(true).withCacheResetInterval(100);
+        for (WriterOptions options : new WriterOptions[] {session, session.withCachePolicy(CachePolicy.CLOCK),
+                new WriterOptions().withCachePolicy(CachePolicy.CLOCK)}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, out, options);
+            for (Object v : values)
+                w.write(v);
+            byte[] bytes = out.toByteArray();
+
+            ValueSplitter splitter = ValueSplitter.create(TransitFactory.Format.JSON, new ByteArrayInputStream(bytes), 1);
+            int chunks = 0;
+            for (; splitter.nextChunk() != null; chunks++);
+            assertEquals(options.isSessionCache() ? (values.size() + 99) / 100 : values.size(), chunks);
+
+            List<Object> read = new ArrayList<Object>();
+            long n = TransitFactory.parallelReader(TransitFactory.Format.JSON).readAll(new ByteArrayInputStream(bytes), read::add);
+            assertEquals(values.size(), n);
+            assertEquals(values, read);
+        }
+
+        try {
+            TransitFactory.parallelReader(TransitFactory.Format.JSON).readAll(
+                    new ByteArrayInputStream("[\"^ \",\"a\",1] [\"^ \"".getBytes()), o -> {});
+            fail();
+        } catch (RuntimeException e) {
+            // truncated
+        }
+    }
+
+    public void testParallelWriter() throws Exception {
+        List<Object> values = new ArrayList<Object>();
+        for (long i = 0; i < 1000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(TransitFactory.keyword("id"), i);
+            m.put(TransitFactory.keyword("name"), "name " + i);
+            values.add(m);
+        }
+        values.add("top-level string");
+
+        for (TransitFactory.Format format : new TransitFactory.Format[] {TransitFactory.Format.JSON, TransitFactory.Format.JSON_VERBOSE}) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Writer<Object> w = TransitFactory.writer(format, expected);
+            for (Object v : values)
+                w.write(v);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ParallelWriter<Object> pw = TransitFactory.parallelWriter(format);
+            assertEquals(values.size(), pw.writeAll(out, values));
+            assertEquals(expected.toString(), out.toString());
+
+            out = new ByteArrayOutputStream();
+            assertEquals(values.size(), pw.writeAll(out, values.stream()));
+            assertEquals(expected.toString(), out.toString());
+
+            List<Object> read = new ArrayList<Object>();
+            TransitFactory.parallelReader(format).readAll(new ByteArrayInputStream(out.toByteArray()), read::add);
+            assertEquals(values, read);
+        }
+
+        try {
+            TransitFactory.parallelWriter(TransitFactory.Format.JSON)
+                    .writeAll(new ByteArrayOutputStream(), Arrays.asList(1L, new Object(), 2L));
+            fail();
+        } catch (RuntimeException e) {
+            // no handler for Object
+        }
+    }
+
+    public void testSessionCache() {
+        Keyword kind = TransitFactory.keyword("kind");
+        Map<Object, Object> first = Collections.<Object, Object>singletonMap(kind, "first");
+        Map<Object, Object> second = Collections.<Object, Object>singletonMap(kind, "second");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, out, new WriterOptions().withSessionCache(true));
+        w.write(first);
+        w.write(second);
+        w.resetCache();
+        w.write(first);
+        w.write(second);
+        assertEquals("\"^!\" [\"^ \",\"~:kind\",\"first\"] [\"^ \",\"^0\",\"second\"] " +
+                "\"^!\" [\"^ \",\"~:kind\",\"first\"] [\"^ \",\"^0\",\"second\"]", out.toString());
+
+        Reader r = reader(out.toString());
+        assertEquals(first, r.read());
+        assertEquals(second, r.read());
+        assertEquals(first, r.read());
+        assertEquals(second, r.read());
+
+        // skipped values still fill the cache
+        r = reader(out.toString());
+        assertTrue(r.skip());
+        assertEquals(second, r.read());
+        assertTrue(r.skip());
+        assertTrue(r.readEvents(new ReadEventHandler() {}));
+        assertFalse(r.skip());
+
+        // periodic reset
+        out = new ByteArrayOutputStream();
+        w = TransitFactory.writer(TransitFactory.Format.JSON, out,
+                new WriterOptions().withSessionCache(true).withCacheResetInterval(2));
+        for (int i = 0; i < 3; i++)
+            w.write(first);
+        assertEquals("\"^!\" [\"^ \",\"~:kind\",\"first\"] [\"^ \",\"^0\",\"first\"] " +
+                "\"^!\" [\"^ \",\"~:kind\",\"first\"]", out.toString());
+
+        // no markers without a session cache, or without a cache at all
+        out = new ByteArrayOutputStream();
+        w = TransitFactory.writer(TransitFactory.Format.JSON, out);
+        w.write(first);
+        w.resetCache();
+        w.write(first);
+        assertEquals("[\"^ \",\"~:kind\",\"first\"] [\"^ \",\"~:kind\",\"first\"]", out.toString());
+        out = new ByteArrayOutputStream();
+        w = TransitFactory.writer(TransitFactory.Format.JSON_VERBOSE, out, new WriterOptions().withSessionCache(true));
+        w.write(first);
+        w.write(first);
+        assertEquals("{\"~:kind\":\"first\"} {\"~:kind\":\"first\"}", out.toString());
+
+        try {
+            new WriterOptions().withCacheResetInterval(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testClockCachePolicy() {
+        Keyword id = TransitFactory.keyword("id");
+        List<Object> rows = new ArrayList<Object>();
+        List<Object> ids = new ArrayList<Object>();
+        for (int i = 0; i < 5000; i++) {
+            Map<Object, Object> m = new HashMap<Object, Object>();
+            m.put(id, (long) i);
+            // seen once, not worth caching
+            m.put(TransitFactory.keyword("tag"), TransitFactory.keyword("tag" + i));
+            m.put("field" + (i % 20), TransitFactory.symbol("sym" + (i % 3000)));
+            rows.add(m);
+            ids.add(Collections.singletonMap(id, (long) i));
+        }
+
+        ByteArrayOutputStream restart = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.JSON, restart).write(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.JSON, out, new WriterOptions().withCachePolicy(CachePolicy.CLOCK)).write(rows);
+
+        // hot keys are written in full only once
+        String s = out.toString();
+        assertTrue(s.startsWith("\"^*\" ["));
+        assertEquals(2, s.split("\"~:id\"", -1).length);
+        assertTrue(restart.toString().split("\"~:id\"", -1).length > 2);
+        assertTrue(out.size() < restart.size());
+
+        // skipped entries are replaced the same way as read ones
+        assertEquals(rows, reader(s).read());
+        assertEquals(Arrays.asList(rows.get(10), rows.get(2500), rows.get(4999)), reader(s).readSelected(10, 2500, 4999));
+        Reader r = TransitFactory.reader(TransitFactory.Format.JSON, new ByteArrayInputStream(out.toByteArray()), null, null,
+                Collections.<List<?>>singletonList(Collections.singletonList(id)));
+        assertEquals(ids, r.read());
+
+        // every value starts over with an empty cache and clock
+        out = new ByteArrayOutputStream();
+        Writer<Object> w = TransitFactory.writer(TransitFactory.Format.JSON, out, new WriterOptions().withCachePolicy(CachePolicy.CLOCK));
+        w.write(rows);
+        w.write(ids);
+        w.write(rows);
+        r = TransitFactory.reader(TransitFactory.Format.JSON, new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(rows, r.read());
+        assertTrue(r.skip());
+        assertEquals(rows, r.read());
+
+        // no effect without a cache
+        out = new ByteArrayOutputStream();
+        TransitFactory.writer(TransitFactory.Format.JSON_VERBOSE, out, new WriterOptions().withCachePolicy(CachePolicy.CLOCK)).write(id);
+        assertEquals("{\"~#'\":\"~:id\"}", out.toString());
+    }
+
 }